@@ -2,18 +2,36 @@ package org.codelibs.elasticsearch.auth;
 
 import java.util.Collection;
 
+import org.codelibs.elasticsearch.auth.action.PublishConstraintsAction;
+import org.codelibs.elasticsearch.auth.action.ReloadAction;
+import org.codelibs.elasticsearch.auth.action.TransportPublishConstraintsAction;
+import org.codelibs.elasticsearch.auth.action.TransportReloadAction;
 import org.codelibs.elasticsearch.auth.module.AuthModule;
 import org.codelibs.elasticsearch.auth.rest.AccountRestAction;
 import org.codelibs.elasticsearch.auth.rest.ReloadRestAction;
+import org.codelibs.elasticsearch.auth.rest.StatsRestAction;
+import org.codelibs.elasticsearch.auth.rest.StatusRestAction;
+import org.codelibs.elasticsearch.auth.security.ConstraintMetaData;
+import org.codelibs.elasticsearch.auth.security.FileAuthenticator;
 import org.codelibs.elasticsearch.auth.security.IndexAuthenticator;
+import org.codelibs.elasticsearch.auth.security.PasswordHasherRegistry;
 import org.codelibs.elasticsearch.auth.service.AuthService;
+import org.elasticsearch.action.ActionModule;
+import org.elasticsearch.cluster.metadata.MetaData;
 import org.elasticsearch.common.collect.Lists;
 import org.elasticsearch.common.component.LifecycleComponent;
 import org.elasticsearch.common.inject.Module;
+import org.elasticsearch.common.settings.ImmutableSettings;
+import org.elasticsearch.common.settings.Settings;
 import org.elasticsearch.plugins.AbstractPlugin;
 import org.elasticsearch.rest.RestModule;
 
 public class AuthPlugin extends AbstractPlugin {
+    static {
+        MetaData.registerFactory(ConstraintMetaData.TYPE,
+                ConstraintMetaData.FACTORY);
+    }
+
     @Override
     public String name() {
         return "AuthPlugin";
@@ -24,10 +42,30 @@ public class AuthPlugin extends AbstractPlugin {
         return "This is a elasticsearch-auth plugin.";
     }
 
+    @Override
+    public Settings additionalSettings() {
+        return ImmutableSettings
+                .settingsBuilder()
+                .put("threadpool." + PasswordHasherRegistry.THREAD_POOL
+                        + ".type", "fixed")
+                .put("threadpool." + PasswordHasherRegistry.THREAD_POOL
+                        + ".queue_size", 1000).build();
+    }
+
+    // for Transport Action
+    public void onModule(final ActionModule module) {
+        module.registerAction(ReloadAction.INSTANCE,
+                TransportReloadAction.class);
+        module.registerAction(PublishConstraintsAction.INSTANCE,
+                TransportPublishConstraintsAction.class);
+    }
+
     // for Rest API
     public void onModule(final RestModule module) {
         module.addRestAction(AccountRestAction.class);
         module.addRestAction(ReloadRestAction.class);
+        module.addRestAction(StatsRestAction.class);
+        module.addRestAction(StatusRestAction.class);
     }
 
     // for Service
@@ -47,6 +85,7 @@ public class AuthPlugin extends AbstractPlugin {
                 .newArrayList();
         services.add(AuthService.class);
         services.add(IndexAuthenticator.class);
+        services.add(FileAuthenticator.class);
         return services;
     }
 }
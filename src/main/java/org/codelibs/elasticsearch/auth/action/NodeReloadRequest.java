@@ -0,0 +1,36 @@
+package org.codelibs.elasticsearch.auth.action;
+
+import java.io.IOException;
+
+import org.elasticsearch.action.support.nodes.NodeOperationRequest;
+import org.elasticsearch.common.io.stream.StreamInput;
+import org.elasticsearch.common.io.stream.StreamOutput;
+
+public class NodeReloadRequest extends NodeOperationRequest {
+
+    private boolean delta;
+
+    NodeReloadRequest() {
+    }
+
+    NodeReloadRequest(final ReloadRequest request, final String nodeId) {
+        super(request, nodeId);
+        delta = request.delta();
+    }
+
+    public boolean delta() {
+        return delta;
+    }
+
+    @Override
+    public void readFrom(final StreamInput in) throws IOException {
+        super.readFrom(in);
+        delta = in.readBoolean();
+    }
+
+    @Override
+    public void writeTo(final StreamOutput out) throws IOException {
+        super.writeTo(out);
+        out.writeBoolean(delta);
+    }
+}
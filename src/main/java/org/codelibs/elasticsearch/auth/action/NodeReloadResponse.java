@@ -0,0 +1,60 @@
+package org.codelibs.elasticsearch.auth.action;
+
+import java.io.IOException;
+
+import org.elasticsearch.action.support.nodes.NodeOperationResponse;
+import org.elasticsearch.cluster.node.DiscoveryNode;
+import org.elasticsearch.common.io.stream.StreamInput;
+import org.elasticsearch.common.io.stream.StreamOutput;
+
+public class NodeReloadResponse extends NodeOperationResponse {
+
+    private long took;
+
+    private int constraints;
+
+    private String failure;
+
+    NodeReloadResponse() {
+    }
+
+    NodeReloadResponse(final DiscoveryNode node, final long took,
+            final int constraints, final String failure) {
+        super(node);
+        this.took = took;
+        this.constraints = constraints;
+        this.failure = failure;
+    }
+
+    public long getTook() {
+        return took;
+    }
+
+    public int getConstraints() {
+        return constraints;
+    }
+
+    public String getFailure() {
+        return failure;
+    }
+
+    public boolean isFailed() {
+        return failure != null;
+    }
+
+    @Override
+    public void readFrom(final StreamInput in) throws IOException {
+        super.readFrom(in);
+        took = in.readVLong();
+        constraints = in.readVInt();
+        failure = in.readOptionalString();
+    }
+
+    @Override
+    public void writeTo(final StreamOutput out) throws IOException {
+        super.writeTo(out);
+        out.writeVLong(took);
+        out.writeVInt(constraints);
+        out.writeOptionalString(failure);
+    }
+}
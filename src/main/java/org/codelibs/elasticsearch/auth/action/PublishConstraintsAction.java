@@ -0,0 +1,28 @@
+package org.codelibs.elasticsearch.auth.action;
+
+import org.elasticsearch.action.admin.cluster.ClusterAction;
+import org.elasticsearch.client.ClusterAdminClient;
+
+public class PublishConstraintsAction
+        extends
+        ClusterAction<PublishConstraintsRequest, PublishConstraintsResponse, PublishConstraintsRequestBuilder> {
+
+    public static final PublishConstraintsAction INSTANCE = new PublishConstraintsAction();
+
+    public static final String NAME = "cluster:admin/auth/constraints/publish";
+
+    private PublishConstraintsAction() {
+        super(NAME);
+    }
+
+    @Override
+    public PublishConstraintsResponse newResponse() {
+        return new PublishConstraintsResponse();
+    }
+
+    @Override
+    public PublishConstraintsRequestBuilder newRequestBuilder(
+            final ClusterAdminClient client) {
+        return new PublishConstraintsRequestBuilder(client);
+    }
+}
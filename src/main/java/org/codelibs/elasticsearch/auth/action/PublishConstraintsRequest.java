@@ -0,0 +1,56 @@
+package org.codelibs.elasticsearch.auth.action;
+
+import static org.elasticsearch.action.ValidateActions.addValidationError;
+
+import java.io.IOException;
+
+import org.codelibs.elasticsearch.auth.security.ConstraintMetaData;
+import org.elasticsearch.action.ActionRequestValidationException;
+import org.elasticsearch.action.support.master.MasterNodeOperationRequest;
+import org.elasticsearch.common.io.stream.StreamInput;
+import org.elasticsearch.common.io.stream.StreamOutput;
+
+public class PublishConstraintsRequest extends
+        MasterNodeOperationRequest<PublishConstraintsRequest> {
+
+    private ConstraintMetaData constraints;
+
+    public PublishConstraintsRequest() {
+    }
+
+    public PublishConstraintsRequest(final ConstraintMetaData constraints) {
+        this.constraints = constraints;
+    }
+
+    public ConstraintMetaData constraints() {
+        return constraints;
+    }
+
+    public PublishConstraintsRequest constraints(
+            final ConstraintMetaData constraints) {
+        this.constraints = constraints;
+        return this;
+    }
+
+    @Override
+    public ActionRequestValidationException validate() {
+        ActionRequestValidationException validationException = null;
+        if (constraints == null) {
+            validationException = addValidationError(
+                    "constraints are missing", validationException);
+        }
+        return validationException;
+    }
+
+    @Override
+    public void readFrom(final StreamInput in) throws IOException {
+        super.readFrom(in);
+        constraints = ConstraintMetaData.FACTORY.readFrom(in);
+    }
+
+    @Override
+    public void writeTo(final StreamOutput out) throws IOException {
+        super.writeTo(out);
+        ConstraintMetaData.FACTORY.writeTo(constraints, out);
+    }
+}
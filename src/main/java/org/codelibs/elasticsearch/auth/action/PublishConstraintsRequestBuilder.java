@@ -0,0 +1,27 @@
+package org.codelibs.elasticsearch.auth.action;
+
+import org.codelibs.elasticsearch.auth.security.ConstraintMetaData;
+import org.elasticsearch.action.ActionListener;
+import org.elasticsearch.action.support.master.MasterNodeOperationRequestBuilder;
+import org.elasticsearch.client.ClusterAdminClient;
+
+public class PublishConstraintsRequestBuilder
+        extends
+        MasterNodeOperationRequestBuilder<PublishConstraintsRequest, PublishConstraintsResponse, PublishConstraintsRequestBuilder, ClusterAdminClient> {
+
+    public PublishConstraintsRequestBuilder(final ClusterAdminClient client) {
+        super(client, new PublishConstraintsRequest());
+    }
+
+    public PublishConstraintsRequestBuilder setConstraints(
+            final ConstraintMetaData constraints) {
+        request.constraints(constraints);
+        return this;
+    }
+
+    @Override
+    protected void doExecute(
+            final ActionListener<PublishConstraintsResponse> listener) {
+        client.execute(PublishConstraintsAction.INSTANCE, request, listener);
+    }
+}
@@ -0,0 +1,35 @@
+package org.codelibs.elasticsearch.auth.action;
+
+import java.io.IOException;
+
+import org.elasticsearch.action.ActionResponse;
+import org.elasticsearch.common.io.stream.StreamInput;
+import org.elasticsearch.common.io.stream.StreamOutput;
+
+public class PublishConstraintsResponse extends ActionResponse {
+
+    private long version;
+
+    PublishConstraintsResponse() {
+    }
+
+    PublishConstraintsResponse(final long version) {
+        this.version = version;
+    }
+
+    public long getVersion() {
+        return version;
+    }
+
+    @Override
+    public void readFrom(final StreamInput in) throws IOException {
+        super.readFrom(in);
+        version = in.readVLong();
+    }
+
+    @Override
+    public void writeTo(final StreamOutput out) throws IOException {
+        super.writeTo(out);
+        out.writeVLong(version);
+    }
+}
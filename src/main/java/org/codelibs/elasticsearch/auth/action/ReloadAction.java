@@ -0,0 +1,27 @@
+package org.codelibs.elasticsearch.auth.action;
+
+import org.elasticsearch.action.admin.cluster.ClusterAction;
+import org.elasticsearch.client.ClusterAdminClient;
+
+public class ReloadAction extends
+        ClusterAction<ReloadRequest, ReloadResponse, ReloadRequestBuilder> {
+
+    public static final ReloadAction INSTANCE = new ReloadAction();
+
+    public static final String NAME = "cluster:admin/auth/reload";
+
+    private ReloadAction() {
+        super(NAME);
+    }
+
+    @Override
+    public ReloadResponse newResponse() {
+        return new ReloadResponse();
+    }
+
+    @Override
+    public ReloadRequestBuilder newRequestBuilder(
+            final ClusterAdminClient client) {
+        return new ReloadRequestBuilder(client);
+    }
+}
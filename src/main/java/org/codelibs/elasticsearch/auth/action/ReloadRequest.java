@@ -0,0 +1,40 @@
+package org.codelibs.elasticsearch.auth.action;
+
+import java.io.IOException;
+
+import org.elasticsearch.action.support.nodes.NodesOperationRequest;
+import org.elasticsearch.common.io.stream.StreamInput;
+import org.elasticsearch.common.io.stream.StreamOutput;
+
+public class ReloadRequest extends NodesOperationRequest<ReloadRequest> {
+
+    private boolean delta = false;
+
+    public ReloadRequest() {
+    }
+
+    public ReloadRequest(final String... nodesIds) {
+        super(nodesIds);
+    }
+
+    public boolean delta() {
+        return delta;
+    }
+
+    public ReloadRequest delta(final boolean delta) {
+        this.delta = delta;
+        return this;
+    }
+
+    @Override
+    public void readFrom(final StreamInput in) throws IOException {
+        super.readFrom(in);
+        delta = in.readBoolean();
+    }
+
+    @Override
+    public void writeTo(final StreamOutput out) throws IOException {
+        super.writeTo(out);
+        out.writeBoolean(delta);
+    }
+}
@@ -0,0 +1,24 @@
+package org.codelibs.elasticsearch.auth.action;
+
+import org.elasticsearch.action.ActionListener;
+import org.elasticsearch.action.support.nodes.NodesOperationRequestBuilder;
+import org.elasticsearch.client.ClusterAdminClient;
+
+public class ReloadRequestBuilder
+        extends
+        NodesOperationRequestBuilder<ReloadRequest, ReloadResponse, ReloadRequestBuilder> {
+
+    public ReloadRequestBuilder(final ClusterAdminClient client) {
+        super(client, new ReloadRequest());
+    }
+
+    public ReloadRequestBuilder setDelta(final boolean delta) {
+        request.delta(delta);
+        return this;
+    }
+
+    @Override
+    protected void doExecute(final ActionListener<ReloadResponse> listener) {
+        client.execute(ReloadAction.INSTANCE, request, listener);
+    }
+}
@@ -0,0 +1,69 @@
+package org.codelibs.elasticsearch.auth.action;
+
+import java.io.IOException;
+
+import org.elasticsearch.action.support.nodes.NodesOperationResponse;
+import org.elasticsearch.cluster.ClusterName;
+import org.elasticsearch.common.io.stream.StreamInput;
+import org.elasticsearch.common.io.stream.StreamOutput;
+import org.elasticsearch.common.xcontent.ToXContent;
+import org.elasticsearch.common.xcontent.XContentBuilder;
+
+public class ReloadResponse extends NodesOperationResponse<NodeReloadResponse>
+        implements ToXContent {
+
+    ReloadResponse() {
+    }
+
+    public ReloadResponse(final ClusterName clusterName,
+            final NodeReloadResponse[] nodes) {
+        super(clusterName, nodes);
+    }
+
+    public boolean hasFailures() {
+        for (final NodeReloadResponse node : nodes) {
+            if (node.isFailed()) {
+                return true;
+            }
+        }
+        return false;
+    }
+
+    @Override
+    public XContentBuilder toXContent(final XContentBuilder builder,
+            final Params params) throws IOException {
+        builder.field("cluster_name", getClusterName().value());
+        builder.startObject("nodes");
+        for (final NodeReloadResponse node : nodes) {
+            builder.startObject(node.getNode().id());
+            builder.field("name", node.getNode().name());
+            builder.field("took", node.getTook());
+            builder.field("constraints", node.getConstraints());
+            if (node.isFailed()) {
+                builder.field("failure", node.getFailure());
+            }
+            builder.endObject();
+        }
+        builder.endObject();
+        return builder;
+    }
+
+    @Override
+    public void readFrom(final StreamInput in) throws IOException {
+        super.readFrom(in);
+        nodes = new NodeReloadResponse[in.readVInt()];
+        for (int i = 0; i < nodes.length; i++) {
+            nodes[i] = new NodeReloadResponse();
+            nodes[i].readFrom(in);
+        }
+    }
+
+    @Override
+    public void writeTo(final StreamOutput out) throws IOException {
+        super.writeTo(out);
+        out.writeVInt(nodes.length);
+        for (final NodeReloadResponse node : nodes) {
+            node.writeTo(out);
+        }
+    }
+}
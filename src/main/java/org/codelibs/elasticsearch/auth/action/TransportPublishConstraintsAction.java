@@ -0,0 +1,91 @@
+package org.codelibs.elasticsearch.auth.action;
+
+import org.codelibs.elasticsearch.auth.security.ConstraintMetaData;
+import org.elasticsearch.ElasticsearchException;
+import org.elasticsearch.action.ActionListener;
+import org.elasticsearch.action.support.ActionFilters;
+import org.elasticsearch.action.support.master.TransportMasterNodeOperationAction;
+import org.elasticsearch.cluster.ClusterService;
+import org.elasticsearch.cluster.ClusterState;
+import org.elasticsearch.cluster.ProcessedClusterStateUpdateTask;
+import org.elasticsearch.cluster.block.ClusterBlockException;
+import org.elasticsearch.cluster.block.ClusterBlockLevel;
+import org.elasticsearch.cluster.metadata.MetaData;
+import org.elasticsearch.common.Priority;
+import org.elasticsearch.common.inject.Inject;
+import org.elasticsearch.common.settings.Settings;
+import org.elasticsearch.threadpool.ThreadPool;
+import org.elasticsearch.transport.TransportService;
+
+public class TransportPublishConstraintsAction
+        extends
+        TransportMasterNodeOperationAction<PublishConstraintsRequest, PublishConstraintsResponse> {
+
+    @Inject
+    public TransportPublishConstraintsAction(final Settings settings,
+            final TransportService transportService,
+            final ClusterService clusterService, final ThreadPool threadPool,
+            final ActionFilters actionFilters) {
+        super(settings, PublishConstraintsAction.NAME, transportService,
+                clusterService, threadPool, actionFilters);
+    }
+
+    @Override
+    protected String executor() {
+        return ThreadPool.Names.SAME;
+    }
+
+    @Override
+    protected PublishConstraintsRequest newRequest() {
+        return new PublishConstraintsRequest();
+    }
+
+    @Override
+    protected PublishConstraintsResponse newResponse() {
+        return new PublishConstraintsResponse();
+    }
+
+    @Override
+    protected ClusterBlockException checkBlock(
+            final PublishConstraintsRequest request, final ClusterState state) {
+        return state.blocks().globalBlockedException(ClusterBlockLevel.METADATA);
+    }
+
+    @Override
+    protected void masterOperation(final PublishConstraintsRequest request,
+            final ClusterState state,
+            final ActionListener<PublishConstraintsResponse> listener)
+            throws ElasticsearchException {
+        clusterService.submitStateUpdateTask("auth-publish-constraints",
+                Priority.URGENT, new ProcessedClusterStateUpdateTask() {
+                    private long version;
+
+                    @Override
+                    public ClusterState execute(final ClusterState currentState) {
+                        final ConstraintMetaData current = currentState
+                                .metaData().custom(ConstraintMetaData.TYPE);
+                        version = current != null ? current.getVersion() + 1
+                                : 1;
+                        final MetaData.Builder metaDataBuilder = MetaData
+                                .builder(currentState.metaData());
+                        metaDataBuilder.putCustom(ConstraintMetaData.TYPE,
+                                request.constraints().withVersion(version));
+                        return ClusterState.builder(currentState)
+                                .metaData(metaDataBuilder).build();
+                    }
+
+                    @Override
+                    public void onFailure(final String source, final Throwable t) {
+                        listener.onFailure(t);
+                    }
+
+                    @Override
+                    public void clusterStateProcessed(final String source,
+                            final ClusterState oldState,
+                            final ClusterState newState) {
+                        listener.onResponse(new PublishConstraintsResponse(
+                                version));
+                    }
+                });
+    }
+}
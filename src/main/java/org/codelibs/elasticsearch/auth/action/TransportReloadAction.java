@@ -0,0 +1,129 @@
+package org.codelibs.elasticsearch.auth.action;
+
+import java.util.ArrayList;
+import java.util.List;
+import java.util.concurrent.atomic.AtomicReferenceArray;
+
+import org.codelibs.elasticsearch.auth.service.AuthService;
+import org.elasticsearch.ElasticsearchException;
+import org.elasticsearch.action.support.ActionFilters;
+import org.elasticsearch.action.support.PlainActionFuture;
+import org.elasticsearch.action.support.nodes.TransportNodesOperationAction;
+import org.elasticsearch.cluster.ClusterName;
+import org.elasticsearch.cluster.ClusterService;
+import org.elasticsearch.cluster.ClusterState;
+import org.elasticsearch.discovery.MasterNotDiscoveredException;
+import org.elasticsearch.common.inject.Inject;
+import org.elasticsearch.common.settings.Settings;
+import org.elasticsearch.common.unit.TimeValue;
+import org.elasticsearch.threadpool.ThreadPool;
+import org.elasticsearch.transport.TransportService;
+
+public class TransportReloadAction
+        extends
+        TransportNodesOperationAction<ReloadRequest, ReloadResponse, NodeReloadRequest, NodeReloadResponse> {
+
+    private final AuthService authService;
+
+    private final TimeValue reloadTimeout;
+
+    @Inject
+    public TransportReloadAction(final Settings settings,
+            final ClusterName clusterName, final ThreadPool threadPool,
+            final ClusterService clusterService,
+            final TransportService transportService,
+            final ActionFilters actionFilters, final AuthService authService) {
+        super(settings, ReloadAction.NAME, clusterName, threadPool,
+                clusterService, transportService, actionFilters);
+        this.authService = authService;
+
+        reloadTimeout = settings.getAsTime("auth.reload.timeout",
+                TimeValue.timeValueMinutes(1));
+    }
+
+    @Override
+    protected String executor() {
+        // nodeOperation waits for the reload, so it runs on the bounded pool
+        return ThreadPool.Names.MANAGEMENT;
+    }
+
+    @Override
+    protected ReloadRequest newRequest() {
+        return new ReloadRequest();
+    }
+
+    @Override
+    protected ReloadResponse newResponse(final ReloadRequest request,
+            final AtomicReferenceArray nodesResponses) {
+        final List<NodeReloadResponse> responses = new ArrayList<NodeReloadResponse>();
+        for (int i = 0; i < nodesResponses.length(); i++) {
+            final Object response = nodesResponses.get(i);
+            if (response instanceof NodeReloadResponse) {
+                responses.add((NodeReloadResponse) response);
+            }
+        }
+        return new ReloadResponse(clusterName,
+                responses.toArray(new NodeReloadResponse[responses.size()]));
+    }
+
+    @Override
+    protected String[] resolveNodes(final ReloadRequest request,
+            final ClusterState clusterState) {
+        if (authService.isClusterStateConstraints()) {
+            // the master node loads constraints and publishes them to all nodes
+            final String masterNodeId = clusterState.nodes().masterNodeId();
+            if (masterNodeId == null) {
+                throw new MasterNotDiscoveredException();
+            }
+            return new String[] { masterNodeId };
+        }
+        return super.resolveNodes(request, clusterState);
+    }
+
+    @Override
+    protected NodeReloadRequest newNodeRequest() {
+        return new NodeReloadRequest();
+    }
+
+    @Override
+    protected NodeReloadRequest newNodeRequest(final String nodeId,
+            final ReloadRequest request) {
+        return new NodeReloadRequest(request, nodeId);
+    }
+
+    @Override
+    protected NodeReloadResponse newNodeResponse() {
+        return new NodeReloadResponse();
+    }
+
+    @Override
+    protected NodeReloadResponse nodeOperation(final NodeReloadRequest request)
+            throws ElasticsearchException {
+        final long startTime = System.currentTimeMillis();
+        if (authService.isClusterStateConstraints()
+                && !clusterService.state().nodes().localNodeMaster()) {
+            // the master node was changed after the request was sent
+            return new NodeReloadResponse(clusterService.localNode(), 0,
+                    authService.getConstraintCount(),
+                    "Not the master node. Constraints are published by the master node.");
+        }
+        final PlainActionFuture<Void> future = PlainActionFuture.newFuture();
+        authService.reload(request.delta(), future);
+        String failure = null;
+        try {
+            future.actionGet(reloadTimeout);
+        } catch (final Exception e) {
+            logger.warn("Failed to reload AuthService.", e);
+            failure = e.getMessage() != null ? e.getMessage() : e.getClass()
+                    .getName();
+        }
+        return new NodeReloadResponse(clusterService.localNode(),
+                System.currentTimeMillis() - startTime,
+                authService.getConstraintCount(), failure);
+    }
+
+    @Override
+    protected boolean accumulateExceptions() {
+        return false;
+    }
+}
@@ -1,110 +1,178 @@
 package org.codelibs.elasticsearch.auth.filter;
 
+import java.util.Queue;
+import java.util.concurrent.ConcurrentLinkedQueue;
+import java.util.concurrent.ScheduledFuture;
 import java.util.concurrent.atomic.AtomicBoolean;
+import java.util.concurrent.atomic.AtomicInteger;
 
+import org.codelibs.elasticsearch.auth.security.ConstraintMatcher;
 import org.codelibs.elasticsearch.auth.security.LoginConstraint;
 import org.codelibs.elasticsearch.auth.service.AuthService;
 import org.codelibs.elasticsearch.auth.util.ResponseUtil;
 import org.elasticsearch.action.ActionListener;
 import org.elasticsearch.common.logging.ESLogger;
 import org.elasticsearch.common.logging.Loggers;
+import org.elasticsearch.common.unit.TimeValue;
 import org.elasticsearch.rest.RestChannel;
 import org.elasticsearch.rest.RestFilter;
 import org.elasticsearch.rest.RestFilterChain;
 import org.elasticsearch.rest.RestRequest;
 import org.elasticsearch.rest.RestStatus;
+import org.elasticsearch.threadpool.ThreadPool;
 
 public class ContentFilter extends RestFilter {
     private static final ESLogger logger = Loggers
             .getLogger(ContentFilter.class);
 
-    private volatile LoginConstraint[] constraints = null;
+    private static final String STATUS_PATH = "/_auth/status";
+
+    private volatile ConstraintMatcher constraintMatcher = null;
 
     private AuthService authService;
 
-    private AtomicBoolean initializing = new AtomicBoolean(false);
+    private ThreadPool threadPool;
+
+    private Queue<PendingRequest> pendingQueue = new ConcurrentLinkedQueue<PendingRequest>();
+
+    private AtomicInteger pendingCount = new AtomicInteger(0);
 
-    public ContentFilter(final AuthService authService) {
+    private int maxPendingRequests = 1000;
+
+    private TimeValue pendingTimeout = TimeValue.timeValueSeconds(30);
+
+    public ContentFilter(final AuthService authService,
+            final ThreadPool threadPool) {
         this.authService = authService;
+        this.threadPool = threadPool;
     }
 
     @Override
     public void process(final RestRequest request, final RestChannel channel,
             final RestFilterChain filterChain) {
-        if (constraints == null) {
-            init(request, channel, filterChain);
+        if (constraintMatcher == null) {
+            if (STATUS_PATH.equals(request.rawPath())) {
+                filterChain.continueProcessing(request, channel);
+            } else {
+                addPendingRequest(request, channel, filterChain);
+            }
         } else {
             processNext(request, channel, filterChain);
         }
     }
 
-    protected void init(final RestRequest request, final RestChannel channel,
-            final RestFilterChain filterChain) {
-        if (logger.isDebugEnabled()) {
-            logger.debug("initializing: {0}", initializing);
+    protected void addPendingRequest(final RestRequest request,
+            final RestChannel channel, final RestFilterChain filterChain) {
+        if (pendingCount.incrementAndGet() > maxPendingRequests) {
+            pendingCount.decrementAndGet();
+            if (logger.isDebugEnabled()) {
+                logger.debug("Pending queue is full: {}", request.rawPath());
+            }
+            sendServiceUnavailable(request, channel);
+            return;
         }
-        if (!initializing.getAndSet(true)) {
-            authService.init(new ActionListener<Void>() {
-                @Override
-                public void onResponse(final Void response) {
-                    initializing.set(false);
-                    if (constraints == null) {
-                        sendServiceUnavailable(request, channel);
-                    } else {
-                        processNext(request, channel, filterChain);
+
+        final PendingRequest pendingRequest = new PendingRequest(request,
+                channel, filterChain);
+        pendingQueue.add(pendingRequest);
+        // queue.remove() and the response must not run on the scheduler thread
+        pendingRequest.timeoutFuture = threadPool.schedule(pendingTimeout,
+                ThreadPool.Names.GENERIC, new Runnable() {
+                    @Override
+                    public void run() {
+                        if (pendingRequest.done.compareAndSet(false, true)) {
+                            pendingQueue.remove(pendingRequest);
+                            pendingCount.decrementAndGet();
+                            if (logger.isDebugEnabled()) {
+                                logger.debug("Pending request timed out: {}",
+                                        request.rawPath());
+                            }
+                            sendServiceUnavailable(request, channel);
+                        }
                     }
-                }
+                });
 
-                @Override
-                public void onFailure(final Throwable e) {
-                    initializing.set(false);
-                    logger.warn("Failed to reload AuthService.", e);
-                    sendServiceUnavailable(request, channel);
-                }
-            });
-        } else {
-            sendServiceUnavailable(request, channel);
+        // the matcher may be installed while queuing
+        if (constraintMatcher != null) {
+            releasePendingRequests();
+        }
+    }
+
+    protected void releasePendingRequests() {
+        if (pendingQueue.isEmpty()) {
+            return;
         }
+        threadPool.generic().execute(new Runnable() {
+            @Override
+            public void run() {
+                PendingRequest pendingRequest;
+                while ((pendingRequest = pendingQueue.poll()) != null) {
+                    if (!pendingRequest.done.compareAndSet(false, true)) {
+                        continue;
+                    }
+                    pendingCount.decrementAndGet();
+                    final ScheduledFuture<?> timeoutFuture = pendingRequest.timeoutFuture;
+                    if (timeoutFuture != null) {
+                        timeoutFuture.cancel(false);
+                    }
+                    try {
+                        processNext(pendingRequest.request,
+                                pendingRequest.channel,
+                                pendingRequest.filterChain);
+                    } catch (final Exception e) {
+                        logger.error("Failed to process a pending request.",
+                                e);
+                        sendServiceUnavailable(pendingRequest.request,
+                                pendingRequest.channel);
+                    }
+                }
+            }
+        });
     }
 
     protected void processNext(final RestRequest request,
             final RestChannel channel, final RestFilterChain filterChain) {
         final String rawPath = request.rawPath();
-        for (final LoginConstraint constraint : constraints) {
-            if (constraint.match(rawPath)) {
-                if (logger.isDebugEnabled()) {
-                    logger.debug(rawPath + " is filtered.");
-                }
-
-                final String token = authService.getToken(request);
-                authService.authenticate(token,
-                        constraint.getRoles(request.method()),
-                        new ActionListener<Boolean>() {
-
-                            @Override
-                            public void onResponse(final Boolean isAuthenticated) {
-                                if (isAuthenticated) {
-                                    filterChain.continueProcessing(request,
-                                            channel);
-                                } else {
-                                    // invalid
-                                    ResponseUtil.send(request, channel,
-                                            RestStatus.FORBIDDEN, "message",
-                                            "Forbidden. Not authorized.");
-                                }
-                            }
+        final LoginConstraint constraint = constraintMatcher.match(rawPath);
+        if (constraint != null) {
+            if (logger.isDebugEnabled()) {
+                logger.debug(rawPath + " is filtered.");
+            }
 
-                            @Override
-                            public void onFailure(final Throwable e) {
-                                logger.error("Authentication failed: token: "
-                                        + token, e);
+            final String token = authService.getToken(request);
+            if (authService.isRejectedToken(token)) {
+                ResponseUtil.send(request, channel,
+                        RestStatus.TOO_MANY_REQUESTS, "message",
+                        "Too many requests with an invalid token.");
+                return;
+            }
+            authService.authenticate(token,
+                    constraint.getRoleBits(request.method()),
+                    new ActionListener<Boolean>() {
+
+                        @Override
+                        public void onResponse(final Boolean isAuthenticated) {
+                            if (isAuthenticated) {
+                                filterChain.continueProcessing(request,
+                                        channel);
+                            } else {
+                                // invalid
                                 ResponseUtil.send(request, channel,
                                         RestStatus.FORBIDDEN, "message",
-                                        "Forbidden. Authentication failed.");
+                                        "Forbidden. Not authorized.");
                             }
-                        });
-                return;
-            }
+                        }
+
+                        @Override
+                        public void onFailure(final Throwable e) {
+                            logger.error("Authentication failed: token: "
+                                    + token, e);
+                            ResponseUtil.send(request, channel,
+                                    RestStatus.FORBIDDEN, "message",
+                                    "Forbidden. Authentication failed.");
+                        }
+                    });
+            return;
         }
         filterChain.continueProcessing(request, channel);
     }
@@ -116,8 +184,42 @@ public class ContentFilter extends RestFilter {
         return;
     }
 
-    public void setLoginConstraints(final LoginConstraint[] constraints) {
-        this.constraints = constraints;
+    public void setConstraintMatcher(final ConstraintMatcher constraintMatcher) {
+        this.constraintMatcher = constraintMatcher;
+        if (constraintMatcher != null) {
+            releasePendingRequests();
+        }
+    }
+
+    public void setMaxPendingRequests(final int maxPendingRequests) {
+        this.maxPendingRequests = maxPendingRequests;
+    }
+
+    public void setPendingTimeout(final TimeValue pendingTimeout) {
+        this.pendingTimeout = pendingTimeout;
+    }
+
+    public int getPendingCount() {
+        return pendingCount.get();
+    }
+
+    private static class PendingRequest {
+        private final RestRequest request;
+
+        private final RestChannel channel;
+
+        private final RestFilterChain filterChain;
+
+        private final AtomicBoolean done = new AtomicBoolean(false);
+
+        private volatile ScheduledFuture<?> timeoutFuture;
+
+        private PendingRequest(final RestRequest request,
+                final RestChannel channel, final RestFilterChain filterChain) {
+            this.request = request;
+            this.channel = channel;
+            this.filterChain = filterChain;
+        }
     }
 
 }
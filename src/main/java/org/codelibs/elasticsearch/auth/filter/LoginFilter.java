@@ -1,25 +1,43 @@
 package org.codelibs.elasticsearch.auth.filter;
 
+import java.io.IOException;
+import java.util.ArrayList;
+import java.util.Collections;
+import java.util.HashMap;
+import java.util.LinkedHashMap;
+import java.util.List;
 import java.util.Map;
 import java.util.concurrent.ConcurrentHashMap;
-import java.util.concurrent.CountDownLatch;
+import java.util.concurrent.ScheduledFuture;
+import java.util.concurrent.atomic.AtomicBoolean;
+import java.util.concurrent.atomic.AtomicInteger;
 
+import org.codelibs.elasticsearch.auth.AuthException;
 import org.codelibs.elasticsearch.auth.security.Authenticator;
+import org.codelibs.elasticsearch.auth.security.AuthenticatorStats;
+import org.codelibs.elasticsearch.auth.security.Credentials;
+import org.codelibs.elasticsearch.auth.security.CredentialsAuthenticator;
 import org.codelibs.elasticsearch.auth.service.AuthService;
 import org.codelibs.elasticsearch.auth.util.ResponseUtil;
 import org.elasticsearch.action.ActionListener;
 import org.elasticsearch.common.logging.ESLogger;
 import org.elasticsearch.common.logging.Loggers;
+import org.elasticsearch.common.unit.TimeValue;
 import org.elasticsearch.rest.RestChannel;
 import org.elasticsearch.rest.RestFilter;
 import org.elasticsearch.rest.RestFilterChain;
 import org.elasticsearch.rest.RestRequest;
 import org.elasticsearch.rest.RestRequest.Method;
 import org.elasticsearch.rest.RestStatus;
+import org.elasticsearch.threadpool.ThreadPool;
 
 public class LoginFilter extends RestFilter {
     private static final ESLogger logger = Loggers.getLogger(LoginFilter.class);
 
+    public enum LoginMode {
+        ALL, ORDERED, FIRST;
+    }
+
     private Method[] methods = new Method[] { Method.POST, Method.PUT };
 
     private String loginPath = "/login";
@@ -28,10 +46,22 @@ public class LoginFilter extends RestFilter {
 
     private AuthService authService;
 
+    private ThreadPool threadPool;
+
+    private LoginMode loginMode = LoginMode.ALL;
+
+    private String[] authenticatorOrder = new String[0];
+
+    private TimeValue authenticatorTimeout = TimeValue.timeValueMillis(-1);
+
+    private AuthenticatorStats authenticatorStats = new AuthenticatorStats();
+
     public LoginFilter(final AuthService authService,
-            final Map<String, Authenticator> authenticatorMap) {
+            final Map<String, Authenticator> authenticatorMap,
+            final ThreadPool threadPool) {
         this.authService = authService;
         this.authenticatorMap = authenticatorMap;
+        this.threadPool = threadPool;
     }
 
     @Override
@@ -41,64 +71,30 @@ public class LoginFilter extends RestFilter {
         if (rawPath.equals(loginPath)) {
             for (final Method method : methods) {
                 if (method == request.method()) {
-                    final Map<String, String> roleMap = new ConcurrentHashMap<String, String>();
-                    final Map<String, Authenticator> authMap = authenticatorMap;
-                    final CountDownLatch latch = new CountDownLatch(
-                            authMap.size());
-                    for (final Map.Entry<String, Authenticator> entry : authMap
-                            .entrySet()) {
-                        entry.getValue().login(request,
-                                new ActionListener<String[]>() {
-                                    @Override
-                                    public void onResponse(final String[] roles) {
-                                        if (roles != null) {
-                                            for (final String role : roles) {
-                                                roleMap.put(role,
-                                                        entry.getKey());
-                                            }
-                                        }
-                                        latch.countDown();
-                                    }
-
-                                    @Override
-                                    public void onFailure(final Throwable e) {
-                                        logger.warn(
-                                                "Failed to authenticate: "
-                                                        + entry.getKey() + "/"
-                                                        + entry.getValue(), e);
-                                        latch.countDown();
-                                    }
-                                });
+                    final List<Map.Entry<String, Authenticator>> authList = getAuthenticators();
+                    if (authList.isEmpty()) {
+                        createToken(request, channel,
+                                Collections.<String, String> emptyMap());
+                        return;
                     }
+
+                    final Map<String, Credentials> credentials;
                     try {
-                        latch.await();
-                        authService.createToken(roleMap.keySet(),
-                                new ActionListener<String>() {
-                                    @Override
-                                    public void onResponse(final String token) {
-                                        if (logger.isDebugEnabled()) {
-                                            logger.debug("Token " + token
-                                                    + " is generated.");
-                                        }
-                                        ResponseUtil.send(request, channel,
-                                                RestStatus.OK, "token", token);
-
-                                    }
-
-                                    @Override
-                                    public void onFailure(final Throwable e) {
-                                        ResponseUtil
-                                                .send(request, channel,
-                                                        RestStatus.BAD_REQUEST,
-                                                        "message",
-                                                        "Invalid username or password.");
-                                    }
-                                });
+                        credentials = parseCredentials(request, authList);
                     } catch (final Exception e) {
-                        logger.error("Login failed.", e);
+                        logger.warn("Invalid login request.", e);
                         ResponseUtil.send(request, channel,
-                                RestStatus.INTERNAL_SERVER_ERROR, "message",
-                                "Login failed.");
+                                RestStatus.BAD_REQUEST, "message",
+                                "Invalid login request.");
+                        return;
+                    }
+                    if (loginMode == LoginMode.ORDERED) {
+                        loginInOrder(request, channel, credentials, authList,
+                                0, false);
+                    } else if (loginMode == LoginMode.FIRST) {
+                        loginFirst(request, channel, credentials, authList);
+                    } else {
+                        loginAll(request, channel, credentials, authList);
                     }
                     return;
                 }
@@ -111,6 +107,292 @@ public class LoginFilter extends RestFilter {
         filterChain.continueProcessing(request, channel);
     }
 
+    // the request is parsed once for each pair of keys used by authenticators
+    private Map<String, Credentials> parseCredentials(
+            final RestRequest request,
+            final List<Map.Entry<String, Authenticator>> authList)
+            throws IOException {
+        final Map<String, Credentials> credentialsMap = new HashMap<String, Credentials>();
+        for (final Map.Entry<String, Authenticator> entry : authList) {
+            if (entry.getValue() instanceof CredentialsAuthenticator) {
+                final CredentialsAuthenticator authenticator = (CredentialsAuthenticator) entry
+                        .getValue();
+                final String key = getCredentialsKey(authenticator);
+                if (!credentialsMap.containsKey(key)) {
+                    credentialsMap.put(key, Credentials.parse(request,
+                            authenticator.getUsernameKey(),
+                            authenticator.getPasswordKey()));
+                }
+            }
+        }
+        return credentialsMap;
+    }
+
+    private String getCredentialsKey(
+            final CredentialsAuthenticator authenticator) {
+        return authenticator.getUsernameKey() + "\n"
+                + authenticator.getPasswordKey();
+    }
+
+    private List<Map.Entry<String, Authenticator>> getAuthenticators() {
+        final Map<String, Authenticator> authMap = new LinkedHashMap<String, Authenticator>();
+        for (final String name : authenticatorOrder) {
+            final Authenticator authenticator = authenticatorMap.get(name);
+            if (authenticator != null) {
+                authMap.put(name, authenticator);
+            }
+        }
+        for (final Map.Entry<String, Authenticator> entry : authenticatorMap
+                .entrySet()) {
+            if (!authMap.containsKey(entry.getKey())) {
+                authMap.put(entry.getKey(), entry.getValue());
+            }
+        }
+        return new ArrayList<Map.Entry<String, Authenticator>>(
+                authMap.entrySet());
+    }
+
+    private void loginAll(final RestRequest request, final RestChannel channel,
+            final Map<String, Credentials> credentials,
+            final List<Map.Entry<String, Authenticator>> authList) {
+        final Map<String, String> roleMap = new ConcurrentHashMap<String, String>();
+        final AtomicBoolean rejected = new AtomicBoolean(false);
+        // the last callback creates a token
+        final AtomicInteger counter = new AtomicInteger(authList.size());
+        for (final Map.Entry<String, Authenticator> entry : authList) {
+            login(request, credentials, entry.getKey(), entry.getValue(),
+                    new ActionListener<String[]>() {
+                        @Override
+                        public void onResponse(final String[] roles) {
+                            if (roles != null) {
+                                for (final String role : roles) {
+                                    roleMap.put(role, entry.getKey());
+                                }
+                            }
+                            if (counter.decrementAndGet() == 0) {
+                                createToken(request, channel, roleMap,
+                                        rejected.get());
+                            }
+                        }
+
+                        @Override
+                        public void onFailure(final Throwable e) {
+                            if (isRejected(e)) {
+                                rejected.set(true);
+                            }
+                            if (counter.decrementAndGet() == 0) {
+                                createToken(request, channel, roleMap,
+                                        rejected.get());
+                            }
+                        }
+                    });
+        }
+    }
+
+    private void loginFirst(final RestRequest request,
+            final RestChannel channel,
+            final Map<String, Credentials> credentials,
+            final List<Map.Entry<String, Authenticator>> authList) {
+        final AtomicInteger counter = new AtomicInteger(authList.size());
+        final AtomicBoolean done = new AtomicBoolean(false);
+        final AtomicBoolean rejected = new AtomicBoolean(false);
+        for (final Map.Entry<String, Authenticator> entry : authList) {
+            login(request, credentials, entry.getKey(), entry.getValue(),
+                    new ActionListener<String[]>() {
+                        @Override
+                        public void onResponse(final String[] roles) {
+                            if (roles != null && roles.length > 0
+                                    && done.compareAndSet(false, true)) {
+                                createToken(request, channel,
+                                        createRoleMap(entry.getKey(), roles));
+                            } else {
+                                onFinished();
+                            }
+                        }
+
+                        @Override
+                        public void onFailure(final Throwable e) {
+                            if (isRejected(e)) {
+                                rejected.set(true);
+                            }
+                            onFinished();
+                        }
+
+                        private void onFinished() {
+                            if (counter.decrementAndGet() == 0
+                                    && done.compareAndSet(false, true)) {
+                                createToken(request, channel,
+                                        Collections.<String, String> emptyMap(),
+                                        rejected.get());
+                            }
+                        }
+                    });
+        }
+    }
+
+    private void loginInOrder(final RestRequest request,
+            final RestChannel channel,
+            final Map<String, Credentials> credentials,
+            final List<Map.Entry<String, Authenticator>> authList,
+            final int index, final boolean rejected) {
+        if (index >= authList.size()) {
+            createToken(request, channel,
+                    Collections.<String, String> emptyMap(), rejected);
+            return;
+        }
+
+        final Map.Entry<String, Authenticator> entry = authList.get(index);
+        login(request, credentials, entry.getKey(), entry.getValue(),
+                new ActionListener<String[]>() {
+                    @Override
+                    public void onResponse(final String[] roles) {
+                        if (roles != null && roles.length > 0) {
+                            createToken(request, channel,
+                                    createRoleMap(entry.getKey(), roles));
+                        } else {
+                            loginInOrder(request, channel, credentials,
+                                    authList, index + 1, rejected);
+                        }
+                    }
+
+                    @Override
+                    public void onFailure(final Throwable e) {
+                        loginInOrder(request, channel, credentials,
+                                authList, index + 1,
+                                rejected || isRejected(e));
+                    }
+                });
+    }
+
+    private void login(final RestRequest request,
+            final Map<String, Credentials> credentials, final String name,
+            final Authenticator authenticator,
+            final ActionListener<String[]> listener) {
+        final long startTime = System.currentTimeMillis();
+        final AtomicBoolean done = new AtomicBoolean(false);
+        final ScheduledFuture<?> timeoutFuture;
+        if (authenticatorTimeout.millis() > 0) {
+            timeoutFuture = threadPool.schedule(authenticatorTimeout,
+                    ThreadPool.Names.GENERIC, new Runnable() {
+                        @Override
+                        public void run() {
+                            if (done.compareAndSet(false, true)) {
+                                authenticatorStats.onTimeout(name,
+                                        System.currentTimeMillis() - startTime);
+                                logger.warn("Authentication timed out: "
+                                        + name + "/" + authenticator);
+                                listener.onFailure(new AuthException(
+                                        RestStatus.REQUEST_TIMEOUT, name
+                                                + " timed out."));
+                            }
+                        }
+                    });
+        } else {
+            timeoutFuture = null;
+        }
+
+        final ActionListener<String[]> loginListener = new ActionListener<String[]>() {
+            @Override
+            public void onResponse(final String[] roles) {
+                if (!done.compareAndSet(false, true)) {
+                    return;
+                }
+                if (timeoutFuture != null) {
+                    timeoutFuture.cancel(false);
+                }
+                final long took = System.currentTimeMillis() - startTime;
+                if (roles != null && roles.length > 0) {
+                    authenticatorStats.onSuccess(name, took);
+                } else {
+                    authenticatorStats.onRejected(name, took);
+                }
+                listener.onResponse(roles);
+            }
+
+            @Override
+            public void onFailure(final Throwable e) {
+                if (!done.compareAndSet(false, true)) {
+                    return;
+                }
+                if (timeoutFuture != null) {
+                    timeoutFuture.cancel(false);
+                }
+                authenticatorStats.onFailure(name, System.currentTimeMillis()
+                        - startTime);
+                logger.warn("Failed to authenticate: " + name + "/"
+                        + authenticator, e);
+                listener.onFailure(e);
+            }
+        };
+        try {
+            if (authenticator instanceof CredentialsAuthenticator) {
+                final CredentialsAuthenticator credentialsAuthenticator = (CredentialsAuthenticator) authenticator;
+                credentialsAuthenticator.login(credentials
+                        .get(getCredentialsKey(credentialsAuthenticator)),
+                        loginListener);
+            } else {
+                authenticator.login(request, loginListener);
+            }
+        } catch (final Exception e) {
+            loginListener.onFailure(e);
+        }
+    }
+
+    private Map<String, String> createRoleMap(final String name,
+            final String[] roles) {
+        final Map<String, String> roleMap = new LinkedHashMap<String, String>();
+        for (final String role : roles) {
+            roleMap.put(role, name);
+        }
+        return roleMap;
+    }
+
+    private boolean isRejected(final Throwable e) {
+        return e instanceof AuthException
+                && ((AuthException) e).getStatus() == RestStatus.TOO_MANY_REQUESTS;
+    }
+
+    private void createToken(final RestRequest request,
+            final RestChannel channel, final Map<String, String> roleMap,
+            final boolean rejected) {
+        if (roleMap.isEmpty() && rejected) {
+            ResponseUtil.send(request, channel, RestStatus.TOO_MANY_REQUESTS,
+                    "message", "Too many login requests.");
+            return;
+        }
+        createToken(request, channel, roleMap);
+    }
+
+    private void createToken(final RestRequest request,
+            final RestChannel channel, final Map<String, String> roleMap) {
+        try {
+            authService.createToken(roleMap.keySet(),
+                    new ActionListener<String>() {
+                        @Override
+                        public void onResponse(final String token) {
+                            if (logger.isDebugEnabled()) {
+                                logger.debug("Token " + token
+                                        + " is generated.");
+                            }
+                            ResponseUtil.send(request, channel, RestStatus.OK,
+                                    "token", token);
+                        }
+
+                        @Override
+                        public void onFailure(final Throwable e) {
+                            ResponseUtil.send(request, channel,
+                                    RestStatus.BAD_REQUEST, "message",
+                                    "Invalid username or password.");
+                        }
+                    });
+        } catch (final Exception e) {
+            logger.error("Login failed.", e);
+            ResponseUtil.send(request, channel,
+                    RestStatus.INTERNAL_SERVER_ERROR, "message",
+                    "Login failed.");
+        }
+    }
+
     public void setLoginPath(final String loginPath) {
         this.loginPath = loginPath;
     }
@@ -119,4 +401,20 @@ public class LoginFilter extends RestFilter {
         methods = method;
     }
 
+    public void setLoginMode(final LoginMode loginMode) {
+        this.loginMode = loginMode;
+    }
+
+    public void setAuthenticatorOrder(final String[] authenticatorOrder) {
+        this.authenticatorOrder = authenticatorOrder;
+    }
+
+    public void setAuthenticatorTimeout(final TimeValue authenticatorTimeout) {
+        this.authenticatorTimeout = authenticatorTimeout;
+    }
+
+    public AuthenticatorStats getAuthenticatorStats() {
+        return authenticatorStats;
+    }
+
 }
@@ -1,5 +1,6 @@
 package org.codelibs.elasticsearch.auth.module;
 
+import org.codelibs.elasticsearch.auth.security.FileAuthenticator;
 import org.codelibs.elasticsearch.auth.security.IndexAuthenticator;
 import org.codelibs.elasticsearch.auth.service.AuthService;
 import org.elasticsearch.common.inject.AbstractModule;
@@ -10,5 +11,6 @@ public class AuthModule extends AbstractModule {
     protected void configure() {
         bind(AuthService.class).asEagerSingleton();
         bind(IndexAuthenticator.class).asEagerSingleton();
+        bind(FileAuthenticator.class).asEagerSingleton();
     }
 }
\ No newline at end of file
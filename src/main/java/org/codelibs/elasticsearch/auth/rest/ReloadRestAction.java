@@ -1,12 +1,18 @@
 package org.codelibs.elasticsearch.auth.rest;
 
-import org.codelibs.elasticsearch.auth.service.AuthService;
+import java.io.IOException;
+
+import org.codelibs.elasticsearch.auth.action.ReloadRequestBuilder;
+import org.codelibs.elasticsearch.auth.action.ReloadResponse;
 import org.codelibs.elasticsearch.auth.util.ResponseUtil;
 import org.elasticsearch.action.ActionListener;
 import org.elasticsearch.client.Client;
+import org.elasticsearch.common.Strings;
 import org.elasticsearch.common.inject.Inject;
 import org.elasticsearch.common.settings.Settings;
+import org.elasticsearch.common.xcontent.XContentBuilder;
 import org.elasticsearch.rest.BaseRestHandler;
+import org.elasticsearch.rest.BytesRestResponse;
 import org.elasticsearch.rest.RestChannel;
 import org.elasticsearch.rest.RestController;
 import org.elasticsearch.rest.RestRequest;
@@ -14,34 +20,55 @@ import org.elasticsearch.rest.RestStatus;
 
 public class ReloadRestAction extends BaseRestHandler {
 
-    private AuthService authService;
-
     @Inject
     public ReloadRestAction(final Settings settings, final Client client,
-            final RestController restController, final AuthService authService) {
+            final RestController restController) {
         super(settings, restController, client);
-        this.authService = authService;
 
         restController.registerHandler(RestRequest.Method.POST,
                 "/_auth/reload", this);
+        restController.registerHandler(RestRequest.Method.POST,
+                "/_auth/reload/{nodeId}", this);
     }
 
     @Override
     protected void handleRequest(final RestRequest request,
             final RestChannel channel, final Client client) {
+        final String[] nodesIds = Strings.splitStringByCommaToArray(request
+                .param("nodeId", request.param("nodes")));
+        new ReloadRequestBuilder(client.admin().cluster())
+                .setNodesIds(nodesIds)
+                .setDelta(request.paramAsBoolean("delta", false))
+                .execute(new ActionListener<ReloadResponse>() {
+                    @Override
+                    public void onResponse(final ReloadResponse response) {
+                        final RestStatus status = response.hasFailures() ? RestStatus.INTERNAL_SERVER_ERROR
+                                : RestStatus.OK;
+                        try {
+                            final XContentBuilder builder = channel
+                                    .newBuilder();
+                            builder.startObject();
+                            builder.field("status", status.getStatus());
+                            response.toXContent(builder, request);
+                            builder.endObject();
+                            channel.sendResponse(new BytesRestResponse(status,
+                                    builder));
+                        } catch (final IOException e) {
+                            logger.error("Failed to send a reload response.",
+                                    e);
+                            ResponseUtil.send(request, channel,
+                                    RestStatus.INTERNAL_SERVER_ERROR,
+                                    "message", "Failed to reload AuthService.");
+                        }
+                    }
 
-        authService.reload(new ActionListener<Void>() {
-            @Override
-            public void onResponse(final Void response) {
-                ResponseUtil.send(request, channel, RestStatus.OK);
-            }
-
-            @Override
-            public void onFailure(final Throwable e) {
-                ResponseUtil.send(request, channel,
-                        RestStatus.INTERNAL_SERVER_ERROR, "message",
-                        "Failed to reload AuthService.");
-            }
-        });
+                    @Override
+                    public void onFailure(final Throwable e) {
+                        logger.error("Failed to reload AuthService.", e);
+                        ResponseUtil.send(request, channel,
+                                RestStatus.INTERNAL_SERVER_ERROR, "message",
+                                "Failed to reload AuthService.");
+                    }
+                });
     }
 }
@@ -0,0 +1,50 @@
+package org.codelibs.elasticsearch.auth.rest;
+
+import java.io.IOException;
+
+import org.codelibs.elasticsearch.auth.service.AuthService;
+import org.codelibs.elasticsearch.auth.util.ResponseUtil;
+import org.elasticsearch.client.Client;
+import org.elasticsearch.common.inject.Inject;
+import org.elasticsearch.common.settings.Settings;
+import org.elasticsearch.common.xcontent.XContentBuilder;
+import org.elasticsearch.rest.BaseRestHandler;
+import org.elasticsearch.rest.BytesRestResponse;
+import org.elasticsearch.rest.RestChannel;
+import org.elasticsearch.rest.RestController;
+import org.elasticsearch.rest.RestRequest;
+import org.elasticsearch.rest.RestStatus;
+
+public class StatsRestAction extends BaseRestHandler {
+
+    private AuthService authService;
+
+    @Inject
+    public StatsRestAction(final Settings settings, final Client client,
+            final RestController restController, final AuthService authService) {
+        super(settings, restController, client);
+        this.authService = authService;
+
+        restController.registerHandler(RestRequest.Method.GET, "/_auth/stats",
+                this);
+    }
+
+    @Override
+    protected void handleRequest(final RestRequest request,
+            final RestChannel channel, final Client client) {
+        try {
+            final XContentBuilder builder = channel.newBuilder();
+            builder.startObject();
+            builder.field("status", RestStatus.OK.getStatus());
+            authService.getTokenCache().toXContent(builder, request);
+            authService.getAuthenticatorStats().toXContent(builder, request);
+            builder.endObject();
+            channel.sendResponse(new BytesRestResponse(RestStatus.OK, builder));
+        } catch (final IOException e) {
+            logger.error("Failed to create stats.", e);
+            ResponseUtil.send(request, channel,
+                    RestStatus.INTERNAL_SERVER_ERROR, "message",
+                    "Failed to create stats.");
+        }
+    }
+}
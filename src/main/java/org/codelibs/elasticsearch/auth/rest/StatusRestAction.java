@@ -0,0 +1,60 @@
+package org.codelibs.elasticsearch.auth.rest;
+
+import java.io.IOException;
+
+import org.codelibs.elasticsearch.auth.service.AuthService;
+import org.codelibs.elasticsearch.auth.util.ResponseUtil;
+import org.elasticsearch.client.Client;
+import org.elasticsearch.common.inject.Inject;
+import org.elasticsearch.common.settings.Settings;
+import org.elasticsearch.common.xcontent.XContentBuilder;
+import org.elasticsearch.rest.BaseRestHandler;
+import org.elasticsearch.rest.BytesRestResponse;
+import org.elasticsearch.rest.RestChannel;
+import org.elasticsearch.rest.RestController;
+import org.elasticsearch.rest.RestRequest;
+import org.elasticsearch.rest.RestStatus;
+
+public class StatusRestAction extends BaseRestHandler {
+
+    private AuthService authService;
+
+    @Inject
+    public StatusRestAction(final Settings settings, final Client client,
+            final RestController restController, final AuthService authService) {
+        super(settings, restController, client);
+        this.authService = authService;
+
+        restController.registerHandler(RestRequest.Method.GET,
+                "/_auth/status", this);
+    }
+
+    @Override
+    protected void handleRequest(final RestRequest request,
+            final RestChannel channel, final Client client) {
+        final boolean ready = authService.isReady();
+        final RestStatus status = ready ? RestStatus.OK
+                : RestStatus.SERVICE_UNAVAILABLE;
+        try {
+            final XContentBuilder builder = channel.newBuilder();
+            builder.startObject();
+            builder.field("status", status.getStatus());
+            builder.field("ready", ready);
+            builder.field("constraints", authService.getConstraintCount());
+            builder.field("pending_requests",
+                    authService.getPendingRequestCount());
+            builder.field("init_attempts", authService.getInitAttempts());
+            final Throwable initFailure = authService.getInitFailure();
+            if (!ready && initFailure != null) {
+                builder.field("init_failure", initFailure.getMessage());
+            }
+            builder.endObject();
+            channel.sendResponse(new BytesRestResponse(status, builder));
+        } catch (final IOException e) {
+            logger.error("Failed to create a status.", e);
+            ResponseUtil.send(request, channel,
+                    RestStatus.INTERNAL_SERVER_ERROR, "message",
+                    "Failed to create a status.");
+        }
+    }
+}
@@ -0,0 +1,93 @@
+package org.codelibs.elasticsearch.auth.security;
+
+import java.io.IOException;
+import java.util.Map;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.ConcurrentMap;
+import java.util.concurrent.atomic.AtomicLong;
+
+import org.elasticsearch.common.xcontent.ToXContent;
+import org.elasticsearch.common.xcontent.XContentBuilder;
+
+public class AuthenticatorStats implements ToXContent {
+
+    private final ConcurrentMap<String, Stats> statsMap = new ConcurrentHashMap<String, Stats>();
+
+    public void onSuccess(final String name, final long took) {
+        final Stats stats = getStats(name);
+        stats.success.incrementAndGet();
+        stats.add(took);
+    }
+
+    public void onRejected(final String name, final long took) {
+        final Stats stats = getStats(name);
+        stats.rejected.incrementAndGet();
+        stats.add(took);
+    }
+
+    public void onFailure(final String name, final long took) {
+        final Stats stats = getStats(name);
+        stats.failure.incrementAndGet();
+        stats.add(took);
+    }
+
+    public void onTimeout(final String name, final long took) {
+        final Stats stats = getStats(name);
+        stats.timeout.incrementAndGet();
+        stats.add(took);
+    }
+
+    private Stats getStats(final String name) {
+        Stats stats = statsMap.get(name);
+        if (stats == null) {
+            final Stats newStats = new Stats();
+            stats = statsMap.putIfAbsent(name, newStats);
+            if (stats == null) {
+                stats = newStats;
+            }
+        }
+        return stats;
+    }
+
+    @Override
+    public XContentBuilder toXContent(final XContentBuilder builder,
+            final Params params) throws IOException {
+        builder.startObject("authenticators");
+        for (final Map.Entry<String, Stats> entry : statsMap.entrySet()) {
+            final Stats stats = entry.getValue();
+            final long count = stats.count.get();
+            final long latency = stats.latency.get();
+            builder.startObject(entry.getKey());
+            builder.field("count", count);
+            builder.field("success", stats.success.get());
+            builder.field("rejected", stats.rejected.get());
+            builder.field("failure", stats.failure.get());
+            builder.field("timeout", stats.timeout.get());
+            builder.field("total_latency_in_millis", latency);
+            builder.field("avg_latency_in_millis", count > 0 ? latency
+                    / count : 0);
+            builder.endObject();
+        }
+        builder.endObject();
+        return builder;
+    }
+
+    private static class Stats {
+        private final AtomicLong count = new AtomicLong();
+
+        private final AtomicLong success = new AtomicLong();
+
+        private final AtomicLong rejected = new AtomicLong();
+
+        private final AtomicLong failure = new AtomicLong();
+
+        private final AtomicLong timeout = new AtomicLong();
+
+        private final AtomicLong latency = new AtomicLong();
+
+        private void add(final long took) {
+            count.incrementAndGet();
+            latency.addAndGet(took);
+        }
+    }
+}
@@ -0,0 +1,162 @@
+package org.codelibs.elasticsearch.auth.security;
+
+import java.util.ArrayList;
+import java.util.IdentityHashMap;
+import java.util.List;
+import java.util.Map;
+
+public class CompiledConstraintTrie implements ConstraintMatcher {
+
+    private static final int LINEAR_SCAN_SIZE = 8;
+
+    private final char[] labels;
+
+    private final int[] labelStarts;
+
+    private final int[] labelEnds;
+
+    private final int[] childStarts;
+
+    private final int[] childEnds;
+
+    private final char[] childKeys;
+
+    private final int[] childNodes;
+
+    private final int[] constraintIds;
+
+    private final LoginConstraint[] constraints;
+
+    private final int size;
+
+    public CompiledConstraintTrie(final LoginConstraint[] constraints) {
+        this(new ConstraintTrie(constraints));
+    }
+
+    public CompiledConstraintTrie(final ConstraintTrie trie) {
+
+        // breadth-first layout keeps siblings next to each other
+        final List<ConstraintTrie.Node> nodeList = new ArrayList<ConstraintTrie.Node>();
+        final Map<ConstraintTrie.Node, Integer> nodeIdMap = new IdentityHashMap<ConstraintTrie.Node, Integer>();
+        final Map<LoginConstraint, Integer> constraintIdMap = new IdentityHashMap<LoginConstraint, Integer>();
+        final List<LoginConstraint> constraintList = new ArrayList<LoginConstraint>();
+        nodeList.add(trie.getRoot());
+        nodeIdMap.put(trie.getRoot(), 0);
+        int labelLength = 0;
+        int keyLength = 0;
+        for (int i = 0; i < nodeList.size(); i++) {
+            final ConstraintTrie.Node node = nodeList.get(i);
+            labelLength += node.getLabel().length();
+            for (final ConstraintTrie.Node child : node.getChildren()) {
+                nodeIdMap.put(child, nodeList.size());
+                nodeList.add(child);
+                keyLength++;
+            }
+            final LoginConstraint constraint = node.getConstraint();
+            if (constraint != null && !constraintIdMap.containsKey(constraint)) {
+                constraintIdMap.put(constraint, constraintList.size());
+                constraintList.add(constraint);
+            }
+        }
+
+        final int numOfNodes = nodeList.size();
+        labels = new char[labelLength];
+        labelStarts = new int[numOfNodes];
+        labelEnds = new int[numOfNodes];
+        childStarts = new int[numOfNodes];
+        childEnds = new int[numOfNodes];
+        childKeys = new char[keyLength];
+        childNodes = new int[keyLength];
+        constraintIds = new int[numOfNodes];
+        int labelPos = 0;
+        int keyPos = 0;
+        for (int i = 0; i < numOfNodes; i++) {
+            final ConstraintTrie.Node node = nodeList.get(i);
+            final String label = node.getLabel();
+            label.getChars(0, label.length(), labels, labelPos);
+            labelStarts[i] = labelPos;
+            labelPos += label.length();
+            labelEnds[i] = labelPos;
+
+            final char[] keys = node.getKeys();
+            final ConstraintTrie.Node[] children = node.getChildren();
+            childStarts[i] = keyPos;
+            for (int j = 0; j < keys.length; j++) {
+                childKeys[keyPos] = keys[j];
+                childNodes[keyPos] = nodeIdMap.get(children[j]);
+                keyPos++;
+            }
+            childEnds[i] = keyPos;
+
+            final LoginConstraint constraint = node.getConstraint();
+            constraintIds[i] = constraint != null ? constraintIdMap
+                    .get(constraint) : -1;
+        }
+        this.constraints = constraintList
+                .toArray(new LoginConstraint[constraintList.size()]);
+        size = trie.size();
+    }
+
+    @Override
+    public LoginConstraint match(final String rawPath) {
+        int matched = constraintIds[0];
+        int node = 0;
+        int pos = 0;
+        final int length = rawPath.length();
+        outer: while (pos < length) {
+            final int child = findChild(node, rawPath.charAt(pos));
+            if (child < 0) {
+                break;
+            }
+            final int start = labelStarts[child];
+            final int end = labelEnds[child];
+            if (pos + end - start > length) {
+                break;
+            }
+            // the first char is already matched by the key
+            for (int i = start + 1, j = pos + 1; i < end; i++, j++) {
+                if (labels[i] != rawPath.charAt(j)) {
+                    break outer;
+                }
+            }
+            pos += end - start;
+            node = child;
+            if (constraintIds[node] >= 0) {
+                matched = constraintIds[node];
+            }
+        }
+        return matched >= 0 ? constraints[matched] : null;
+    }
+
+    @Override
+    public int size() {
+        return size;
+    }
+
+    private int findChild(final int node, final char ch) {
+        final int start = childStarts[node];
+        final int end = childEnds[node];
+        if (end - start <= LINEAR_SCAN_SIZE) {
+            for (int i = start; i < end; i++) {
+                if (childKeys[i] == ch) {
+                    return childNodes[i];
+                }
+            }
+            return -1;
+        }
+        int low = start;
+        int high = end - 1;
+        while (low <= high) {
+            final int mid = (low + high) >>> 1;
+            final char key = childKeys[mid];
+            if (key < ch) {
+                low = mid + 1;
+            } else if (key > ch) {
+                high = mid - 1;
+            } else {
+                return childNodes[mid];
+            }
+        }
+        return -1;
+    }
+}
@@ -0,0 +1,251 @@
+package org.codelibs.elasticsearch.auth.security;
+
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.BitSet;
+import java.util.HashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.TreeSet;
+
+public class ConstraintAutomaton implements ConstraintMatcher {
+
+    private static final int ANY_CHAR = -1;
+
+    private static final int STAR = -2;
+
+    private static final int GLOBSTAR = -3;
+
+    private static final int DEAD = -1;
+
+    // sorted chars which have their own transition class, others share the last class
+    private final char[] classChars;
+
+    private final int slashClass;
+
+    private final int width;
+
+    private final int[] transitions;
+
+    private final LoginConstraint[] accepts;
+
+    private final int size;
+
+    public ConstraintAutomaton(final LoginConstraint[] constraints,
+            final int maxStates) {
+        size = constraints.length;
+        final int[][] patterns = new int[constraints.length][];
+        final int[] offsets = new int[constraints.length];
+        final int[] literalCounts = new int[constraints.length];
+        final TreeSet<Character> charSet = new TreeSet<Character>();
+        charSet.add('/');
+        int numOfNfaStates = 0;
+        for (int i = 0; i < constraints.length; i++) {
+            patterns[i] = parse(constraints[i].getPath());
+            offsets[i] = numOfNfaStates;
+            numOfNfaStates += patterns[i].length + 1;
+            for (final int element : patterns[i]) {
+                if (element >= 0) {
+                    charSet.add((char) element);
+                    literalCounts[i]++;
+                }
+            }
+        }
+        classChars = new char[charSet.size()];
+        int pos = 0;
+        for (final Character ch : charSet) {
+            classChars[pos++] = ch;
+        }
+        slashClass = Arrays.binarySearch(classChars, '/');
+        width = classChars.length + 1;
+
+        final int[] nfaPattern = new int[numOfNfaStates];
+        for (int i = 0; i < patterns.length; i++) {
+            Arrays.fill(nfaPattern, offsets[i], offsets[i] + patterns[i].length
+                    + 1, i);
+        }
+
+        // subset construction
+        final Map<BitSet, Integer> stateMap = new HashMap<BitSet, Integer>();
+        final List<BitSet> stateList = new ArrayList<BitSet>();
+        final BitSet start = new BitSet(numOfNfaStates);
+        for (int i = 0; i < patterns.length; i++) {
+            addState(start, patterns[i], offsets[i], 0);
+        }
+        stateMap.put(start, 0);
+        stateList.add(start);
+        final List<int[]> rows = new ArrayList<int[]>();
+        for (int current = 0; current < stateList.size(); current++) {
+            final BitSet nfaStates = stateList.get(current);
+            final int[] row = new int[width];
+            for (int cls = 0; cls < width; cls++) {
+                final BitSet next = new BitSet(numOfNfaStates);
+                for (int s = nfaStates.nextSetBit(0); s >= 0; s = nfaStates
+                        .nextSetBit(s + 1)) {
+                    final int p = nfaPattern[s];
+                    step(next, patterns[p], offsets[p], s - offsets[p], cls);
+                }
+                if (next.isEmpty()) {
+                    row[cls] = DEAD;
+                    continue;
+                }
+                Integer id = stateMap.get(next);
+                if (id == null) {
+                    if (stateList.size() >= maxStates) {
+                        throw new IllegalStateException(
+                                "Constraint paths are too complex: more than "
+                                        + maxStates + " states.");
+                    }
+                    id = stateList.size();
+                    stateMap.put(next, id);
+                    stateList.add(next);
+                }
+                row[cls] = id;
+            }
+            rows.add(row);
+        }
+
+        transitions = new int[rows.size() * width];
+        accepts = new LoginConstraint[rows.size()];
+        for (int state = 0; state < rows.size(); state++) {
+            System.arraycopy(rows.get(state), 0, transitions, state * width,
+                    width);
+            final BitSet nfaStates = stateList.get(state);
+            int best = -1;
+            for (int s = nfaStates.nextSetBit(0); s >= 0; s = nfaStates
+                    .nextSetBit(s + 1)) {
+                final int p = nfaPattern[s];
+                if (s - offsets[p] == patterns[p].length
+                        && (best < 0 || literalCounts[p] > literalCounts[best])) {
+                    best = p;
+                }
+            }
+            if (best >= 0) {
+                accepts[state] = constraints[best];
+            }
+        }
+    }
+
+    public static boolean isPattern(final String path) {
+        for (int i = 0; i < path.length(); i++) {
+            final char ch = path.charAt(i);
+            if (ch == '\\') {
+                i++;
+            } else if (ch == '*' || ch == '?') {
+                return true;
+            }
+        }
+        return false;
+    }
+
+    // same escape rule as parse(), for matchers without wildcards
+    public static String unescape(final String path) {
+        if (path.indexOf('\\') < 0) {
+            return path;
+        }
+        final StringBuilder buf = new StringBuilder(path.length());
+        for (int i = 0; i < path.length(); i++) {
+            final char ch = path.charAt(i);
+            if (ch == '\\' && i + 1 < path.length()) {
+                buf.append(path.charAt(++i));
+            } else {
+                buf.append(ch);
+            }
+        }
+        return buf.toString();
+    }
+
+    @Override
+    public LoginConstraint match(final String rawPath) {
+        int state = 0;
+        LoginConstraint matched = accepts[0];
+        final int length = rawPath.length();
+        for (int i = 0; i < length; i++) {
+            state = transitions[state * width + getClass(rawPath.charAt(i))];
+            if (state == DEAD) {
+                break;
+            }
+            if (accepts[state] != null) {
+                matched = accepts[state];
+            }
+        }
+        return matched;
+    }
+
+    @Override
+    public int size() {
+        return size;
+    }
+
+    public int getNumberOfStates() {
+        return accepts.length;
+    }
+
+    private int getClass(final char ch) {
+        final int pos = Arrays.binarySearch(classChars, ch);
+        return pos >= 0 ? pos : classChars.length;
+    }
+
+    private void step(final BitSet next, final int[] pattern, final int offset,
+            final int pos, final int cls) {
+        if (pos == pattern.length) {
+            // already matched as a prefix
+            return;
+        }
+        final int element = pattern[pos];
+        switch (element) {
+        case ANY_CHAR:
+            if (cls != slashClass) {
+                addState(next, pattern, offset, pos + 1);
+            }
+            break;
+        case STAR:
+            if (cls != slashClass) {
+                addState(next, pattern, offset, pos);
+            }
+            break;
+        case GLOBSTAR:
+            addState(next, pattern, offset, pos);
+            break;
+        default:
+            if (cls < classChars.length && classChars[cls] == element) {
+                addState(next, pattern, offset, pos + 1);
+            }
+            break;
+        }
+    }
+
+    private void addState(final BitSet states, final int[] pattern,
+            final int offset, final int pos) {
+        int current = pos;
+        states.set(offset + current);
+        while (current < pattern.length
+                && (pattern[current] == STAR || pattern[current] == GLOBSTAR)) {
+            current++;
+            states.set(offset + current);
+        }
+    }
+
+    private static int[] parse(final String path) {
+        final int[] elements = new int[path.length()];
+        int size = 0;
+        for (int i = 0; i < path.length(); i++) {
+            final char ch = path.charAt(i);
+            if (ch == '\\' && i + 1 < path.length()) {
+                elements[size++] = path.charAt(++i);
+            } else if (ch == '?') {
+                elements[size++] = ANY_CHAR;
+            } else if (ch == '*') {
+                if (i + 1 < path.length() && path.charAt(i + 1) == '*') {
+                    i++;
+                    elements[size++] = GLOBSTAR;
+                } else {
+                    elements[size++] = STAR;
+                }
+            } else {
+                elements[size++] = ch;
+            }
+        }
+        return Arrays.copyOf(elements, size);
+    }
+}
@@ -0,0 +1,630 @@
+package org.codelibs.elasticsearch.auth.security;
+
+import java.util.ArrayList;
+import java.util.Collections;
+import java.util.Comparator;
+import java.util.HashMap;
+import java.util.HashSet;
+import java.util.List;
+import java.util.Map;
+import java.util.Set;
+import java.util.TreeMap;
+
+import org.codelibs.elasticsearch.auth.util.MapUtil;
+import org.elasticsearch.ElasticsearchException;
+import org.elasticsearch.action.ActionListener;
+import org.elasticsearch.action.admin.indices.mapping.get.GetMappingsResponse;
+import org.elasticsearch.action.admin.indices.stats.IndicesStatsResponse;
+import org.elasticsearch.action.get.GetResponse;
+import org.elasticsearch.action.get.MultiGetItemResponse;
+import org.elasticsearch.action.get.MultiGetRequest;
+import org.elasticsearch.action.get.MultiGetRequestBuilder;
+import org.elasticsearch.action.get.MultiGetResponse;
+import org.elasticsearch.action.search.ClearScrollResponse;
+import org.elasticsearch.action.search.SearchRequestBuilder;
+import org.elasticsearch.action.search.SearchResponse;
+import org.elasticsearch.action.search.SearchType;
+import org.elasticsearch.client.Client;
+import org.elasticsearch.cluster.metadata.MappingMetaData;
+import org.elasticsearch.common.collect.ImmutableOpenMap;
+import org.elasticsearch.common.logging.ESLogger;
+import org.elasticsearch.common.logging.Loggers;
+import org.elasticsearch.common.settings.Settings;
+import org.elasticsearch.common.unit.TimeValue;
+import org.elasticsearch.index.query.QueryBuilders;
+import org.elasticsearch.search.SearchHit;
+import org.elasticsearch.search.fetch.source.FetchSourceContext;
+
+public class ConstraintLoader {
+    private static final ESLogger logger = Loggers
+            .getLogger(ConstraintLoader.class);
+
+    private static final String[] SOURCE_FIELDS = new String[] { "paths",
+            "methods", "roles" };
+
+    private static final String[] EMPTY_STRINGS = new String[0];
+
+    private static final Comparator<String> PATH_COMPARATOR = new Comparator<String>() {
+        @Override
+        public int compare(final String path1, final String path2) {
+            final int length1 = path1.length();
+            final int length2 = path2.length();
+            if (length1 == length2) {
+                return -1 * path1.compareTo(path2);
+            }
+            return length1 < length2 ? -1 : 1;
+        }
+    };
+
+    private final Client client;
+
+    private final RoleRegistry roleRegistry;
+
+    private final String index;
+
+    private final String type;
+
+    private final int pageSize;
+
+    private final TimeValue keepAlive;
+
+    private final long deltaMargin;
+
+    // the state of the installed constraints
+    private volatile State state;
+
+    // the loaded state, which becomes the current state by commit()
+    private volatile State pendingState;
+
+    public ConstraintLoader(final Settings settings, final Client client,
+            final RoleRegistry roleRegistry, final String index,
+            final String type) {
+        this.client = client;
+        this.roleRegistry = roleRegistry;
+        this.index = index;
+        this.type = type;
+
+        pageSize = settings.getAsInt("auth.constraint.load.page_size", 500);
+        keepAlive = settings.getAsTime("auth.constraint.load.keep_alive",
+                TimeValue.timeValueMinutes(1));
+        deltaMargin = settings.getAsTime("auth.constraint.load.delta_margin",
+                TimeValue.timeValueMinutes(1)).millis();
+    }
+
+    public Map<String, LoginConstraint> getChanges() {
+        final State loaded = pendingState;
+        return loaded == null ? null : loaded.changes;
+    }
+
+    public void commit() {
+        final State loaded = pendingState;
+        if (loaded != null) {
+            state = loaded;
+            pendingState = null;
+        }
+    }
+
+    public void load(final ActionListener<LoginConstraint[]> listener) {
+        final long loadTime = System.currentTimeMillis();
+        getDeleteCount(new ActionListener<Long>() {
+            @Override
+            public void onResponse(final Long deleteCount) {
+                final Map<String, ConstraintDoc> docMap = new HashMap<String, ConstraintDoc>();
+                scan(client.prepareSearch(index).setTypes(type)
+                        .setSearchType(SearchType.SCAN).setScroll(keepAlive)
+                        .setQuery(QueryBuilders.matchAllQuery())
+                        .setSize(pageSize).setVersion(true)
+                        .setFetchSource(SOURCE_FIELDS, null),
+                        new PageHandler() {
+                            @Override
+                            public void handle(final SearchHit[] hits) {
+                                for (final SearchHit hit : hits) {
+                                    docMap.put(hit.getId(), parse(
+                                            hit.getSource(), hit.getVersion()));
+                                }
+                            }
+                        }, new ActionListener<Void>() {
+                            @Override
+                            public void onResponse(final Void response) {
+                                final State newState = apply(null, docMap,
+                                        Collections.<String> emptySet());
+                                newState.loadTime = loadTime;
+                                newState.deleteCount = deleteCount;
+                                pendingState = newState;
+                                listener.onResponse(newState.constraints);
+                            }
+
+                            @Override
+                            public void onFailure(final Throwable e) {
+                                listener.onFailure(e);
+                            }
+                        });
+            }
+
+            @Override
+            public void onFailure(final Throwable e) {
+                listener.onFailure(e);
+            }
+        });
+    }
+
+    public void loadDelta(final ActionListener<LoginConstraint[]> listener) {
+        final State current = state;
+        if (current == null) {
+            load(listener);
+            return;
+        }
+
+        final long loadTime = System.currentTimeMillis();
+        getDeleteCount(new ActionListener<Long>() {
+            @Override
+            public void onResponse(final Long deleteCount) {
+                if (deleteCount.longValue() != current.deleteCount) {
+                    // deleted documents are found only by listing all ids
+                    loadDeltaByVersion(current, loadTime, deleteCount,
+                            listener);
+                    return;
+                }
+                isTimestampEnabled(new ActionListener<Boolean>() {
+                    @Override
+                    public void onResponse(final Boolean enabled) {
+                        if (enabled.booleanValue()) {
+                            loadDeltaByTimestamp(current, loadTime,
+                                    deleteCount, listener);
+                        } else {
+                            loadDeltaByVersion(current, loadTime,
+                                    deleteCount, listener);
+                        }
+                    }
+
+                    @Override
+                    public void onFailure(final Throwable e) {
+                        listener.onFailure(e);
+                    }
+                });
+            }
+
+            @Override
+            public void onFailure(final Throwable e) {
+                listener.onFailure(e);
+            }
+        });
+    }
+
+    private void loadDeltaByTimestamp(final State current,
+            final long loadTime, final long deleteCount,
+            final ActionListener<LoginConstraint[]> listener) {
+        final Map<String, ConstraintDoc> changedDocs = new HashMap<String, ConstraintDoc>();
+        // the margin covers clock skew and requests in flight
+        scan(client
+                .prepareSearch(index)
+                .setTypes(type)
+                .setSearchType(SearchType.SCAN)
+                .setScroll(keepAlive)
+                .setQuery(
+                        QueryBuilders.rangeQuery("_timestamp").gte(
+                                current.loadTime - deltaMargin))
+                .setSize(pageSize).setVersion(true)
+                .setFetchSource(SOURCE_FIELDS, null), new PageHandler() {
+            @Override
+            public void handle(final SearchHit[] hits) {
+                for (final SearchHit hit : hits) {
+                    final ConstraintDoc doc = current.docMap.get(hit.getId());
+                    if (doc == null || doc.version != hit.getVersion()) {
+                        changedDocs.put(hit.getId(),
+                                parse(hit.getSource(), hit.getVersion()));
+                    }
+                }
+            }
+        }, new ActionListener<Void>() {
+            @Override
+            public void onResponse(final Void response) {
+                if (logger.isDebugEnabled()) {
+                    logger.debug("Apply {} changed constraint document(s).",
+                            changedDocs.size());
+                }
+                final State newState = apply(current, changedDocs,
+                        Collections.<String> emptySet());
+                newState.loadTime = loadTime;
+                newState.deleteCount = deleteCount;
+                pendingState = newState;
+                listener.onResponse(newState.constraints);
+            }
+
+            @Override
+            public void onFailure(final Throwable e) {
+                listener.onFailure(e);
+            }
+        });
+    }
+
+    private void loadDeltaByVersion(final State current, final long loadTime,
+            final long deleteCount,
+            final ActionListener<LoginConstraint[]> listener) {
+        final Map<String, Long> versionMap = new HashMap<String, Long>();
+        scan(client.prepareSearch(index).setTypes(type)
+                .setSearchType(SearchType.SCAN).setScroll(keepAlive)
+                .setQuery(QueryBuilders.matchAllQuery()).setSize(pageSize)
+                .setVersion(true).setFetchSource(false), new PageHandler() {
+            @Override
+            public void handle(final SearchHit[] hits) {
+                for (final SearchHit hit : hits) {
+                    versionMap.put(hit.getId(), hit.getVersion());
+                }
+            }
+        }, new ActionListener<Void>() {
+            @Override
+            public void onResponse(final Void response) {
+                final List<String> changedIds = new ArrayList<String>();
+                for (final Map.Entry<String, Long> entry : versionMap
+                        .entrySet()) {
+                    final ConstraintDoc doc = current.docMap.get(entry
+                            .getKey());
+                    if (doc == null
+                            || doc.version != entry.getValue().longValue()) {
+                        changedIds.add(entry.getKey());
+                    }
+                }
+                final Set<String> deletedIds = new HashSet<String>();
+                for (final String id : current.docMap.keySet()) {
+                    if (!versionMap.containsKey(id)) {
+                        deletedIds.add(id);
+                    }
+                }
+
+                final Map<String, ConstraintDoc> changedDocs = new HashMap<String, ConstraintDoc>();
+                fetch(changedIds, 0, changedDocs, deletedIds,
+                        new ActionListener<Void>() {
+                            @Override
+                            public void onResponse(final Void response) {
+                                if (logger.isDebugEnabled()) {
+                                    logger.debug(
+                                            "Apply {} changed and {} deleted constraint document(s).",
+                                            changedDocs.size(),
+                                            deletedIds.size());
+                                }
+                                final State newState = apply(current,
+                                        changedDocs, deletedIds);
+                                newState.loadTime = loadTime;
+                                newState.deleteCount = deleteCount;
+                                pendingState = newState;
+                                listener.onResponse(newState.constraints);
+                            }
+
+                            @Override
+                            public void onFailure(final Throwable e) {
+                                listener.onFailure(e);
+                            }
+                        });
+            }
+
+            @Override
+            public void onFailure(final Throwable e) {
+                listener.onFailure(e);
+            }
+        });
+    }
+
+    private void getDeleteCount(final ActionListener<Long> listener) {
+        client.admin().indices().prepareStats(index).clear().setIndexing(true)
+                .execute(new ActionListener<IndicesStatsResponse>() {
+                    @Override
+                    public void onResponse(final IndicesStatsResponse response) {
+                        listener.onResponse(response.getPrimaries()
+                                .getIndexing().getTotal().getDeleteCount());
+                    }
+
+                    @Override
+                    public void onFailure(final Throwable e) {
+                        listener.onFailure(e);
+                    }
+                });
+    }
+
+    private void isTimestampEnabled(final ActionListener<Boolean> listener) {
+        client.admin().indices().prepareGetMappings(index).setTypes(type)
+                .execute(new ActionListener<GetMappingsResponse>() {
+                    @Override
+                    public void onResponse(final GetMappingsResponse response) {
+                        boolean enabled = false;
+                        final ImmutableOpenMap<String, MappingMetaData> mappings = response
+                                .getMappings().get(index);
+                        if (mappings != null) {
+                            final MappingMetaData mapping = mappings.get(type);
+                            enabled = mapping != null
+                                    && mapping.timestamp().enabled();
+                        }
+                        if (!enabled && logger.isDebugEnabled()) {
+                            logger.debug(
+                                    "_timestamp of {}/{} is disabled. All ids are listed.",
+                                    index, type);
+                        }
+                        listener.onResponse(enabled);
+                    }
+
+                    @Override
+                    public void onFailure(final Throwable e) {
+                        listener.onFailure(e);
+                    }
+                });
+    }
+
+    public LoginConstraint[] build(final List<Map<String, Object>> sourceList) {
+        final Map<String, ConstraintDoc> docMap = new HashMap<String, ConstraintDoc>();
+        for (int i = 0; i < sourceList.size(); i++) {
+            docMap.put(Integer.toString(i), parse(sourceList.get(i), 0));
+        }
+        return apply(null, docMap, Collections.<String> emptySet()).constraints;
+    }
+
+    private void fetch(final List<String> ids, final int offset,
+            final Map<String, ConstraintDoc> changedDocs,
+            final Set<String> deletedIds, final ActionListener<Void> listener) {
+        if (offset >= ids.size()) {
+            listener.onResponse(null);
+            return;
+        }
+
+        final int end = Math.min(offset + pageSize, ids.size());
+        final MultiGetRequestBuilder builder = client.prepareMultiGet();
+        for (int i = offset; i < end; i++) {
+            builder.add(new MultiGetRequest.Item(index, type, ids.get(i))
+                    .fetchSourceContext(new FetchSourceContext(SOURCE_FIELDS,
+                            null)));
+        }
+        builder.execute(new ActionListener<MultiGetResponse>() {
+            @Override
+            public void onResponse(final MultiGetResponse response) {
+                for (final MultiGetItemResponse item : response) {
+                    if (item.isFailed()) {
+                        listener.onFailure(new ElasticsearchException(item
+                                .getFailure().getMessage()));
+                        return;
+                    }
+                    final GetResponse getResponse = item.getResponse();
+                    if (getResponse.isExists()) {
+                        changedDocs.put(getResponse.getId(), parse(
+                                getResponse.getSourceAsMap(),
+                                getResponse.getVersion()));
+                    } else {
+                        deletedIds.add(getResponse.getId());
+                    }
+                }
+                fetch(ids, end, changedDocs, deletedIds, listener);
+            }
+
+            @Override
+            public void onFailure(final Throwable e) {
+                listener.onFailure(e);
+            }
+        });
+    }
+
+    // the base state is not changed, so it stays valid if the result is not
+    // committed
+    State apply(final State base, final Map<String, ConstraintDoc> changedDocs,
+            final Set<String> deletedIds) {
+        final State target = base == null ? new State() : new State(base);
+        final Set<String> affectedPaths = new HashSet<String>();
+        for (final String id : deletedIds) {
+            removeDoc(target, affectedPaths, id);
+        }
+        for (final Map.Entry<String, ConstraintDoc> entry : changedDocs
+                .entrySet()) {
+            final String id = entry.getKey();
+            final ConstraintDoc doc = entry.getValue();
+            removeDoc(target, affectedPaths, id);
+            target.docMap.put(id, doc);
+            for (final String path : doc.paths) {
+                editDocIds(target, affectedPaths, path).add(id);
+            }
+        }
+
+        final Map<String, LoginConstraint> changes = new HashMap<String, LoginConstraint>();
+        for (final String path : affectedPaths) {
+            final Set<String> ids = target.pathDocMap.get(path);
+            if (ids == null || ids.isEmpty()) {
+                target.pathDocMap.remove(path);
+                if (target.constraintMap.remove(path) != null) {
+                    changes.put(path, null);
+                }
+                continue;
+            }
+            final LoginConstraint constraint = new LoginConstraint(
+                    roleRegistry);
+            constraint.setPath(path);
+            for (final String id : ids) {
+                final ConstraintDoc doc = target.docMap.get(id);
+                constraint.addCondition(doc.methods, doc.roles);
+            }
+            target.constraintMap.put(path, constraint);
+            changes.put(path, constraint);
+        }
+
+        target.changes = changes;
+        if (!changes.isEmpty()) {
+            target.constraints = target.constraintMap.values().toArray(
+                    new LoginConstraint[target.constraintMap.size()]);
+        }
+        return target;
+    }
+
+    private void removeDoc(final State target, final Set<String> affectedPaths,
+            final String id) {
+        final ConstraintDoc doc = target.docMap.remove(id);
+        if (doc == null) {
+            return;
+        }
+        for (final String path : doc.paths) {
+            editDocIds(target, affectedPaths, path).remove(id);
+        }
+    }
+
+    private Set<String> editDocIds(final State target,
+            final Set<String> affectedPaths, final String path) {
+        // copy the id set on the first change, the base state shares it
+        Set<String> ids = target.pathDocMap.get(path);
+        if (affectedPaths.add(path) || ids == null) {
+            ids = ids == null ? new HashSet<String>() : new HashSet<String>(
+                    ids);
+            target.pathDocMap.put(path, ids);
+        }
+        return ids;
+    }
+
+    ConstraintDoc parse(final Map<String, Object> sourceMap,
+            final long version) {
+        if (sourceMap == null) {
+            return new ConstraintDoc(version, EMPTY_STRINGS, EMPTY_STRINGS,
+                    EMPTY_STRINGS);
+        }
+        final List<String> methodList = MapUtil.getAsList(sourceMap,
+                "methods", Collections.<String> emptyList());
+        final List<String> pathList = MapUtil.getAsList(sourceMap, "paths",
+                Collections.<String> emptyList());
+        final List<String> roleList = MapUtil.getAsList(sourceMap, "roles",
+                Collections.<String> emptyList());
+        if (pathList.isEmpty() || roleList.isEmpty()) {
+            logger.warn("Invaid login settings: " + sourceMap);
+            return new ConstraintDoc(version, EMPTY_STRINGS, EMPTY_STRINGS,
+                    EMPTY_STRINGS);
+        }
+        return new ConstraintDoc(version, pathList.toArray(new String[pathList
+                .size()]), methodList.toArray(new String[methodList.size()]),
+                roleList.toArray(new String[roleList.size()]));
+    }
+
+    private void scan(final SearchRequestBuilder builder,
+            final PageHandler handler, final ActionListener<Void> listener) {
+        builder.execute(new ActionListener<SearchResponse>() {
+            @Override
+            public void onResponse(final SearchResponse response) {
+                if (response.getHits().getTotalHits() == 0) {
+                    clearScroll(response.getScrollId());
+                    listener.onResponse(null);
+                    return;
+                }
+                scroll(response.getScrollId(), handler, listener);
+            }
+
+            @Override
+            public void onFailure(final Throwable e) {
+                listener.onFailure(e);
+            }
+        });
+    }
+
+    private void scroll(final String scrollId, final PageHandler handler,
+            final ActionListener<Void> listener) {
+        client.prepareSearchScroll(scrollId).setScroll(keepAlive)
+                .execute(new ActionListener<SearchResponse>() {
+                    @Override
+                    public void onResponse(final SearchResponse response) {
+                        final SearchHit[] hits = response.getHits().getHits();
+                        if (hits.length == 0) {
+                            clearScroll(response.getScrollId());
+                            listener.onResponse(null);
+                            return;
+                        }
+                        try {
+                            handler.handle(hits);
+                        } catch (final Exception e) {
+                            clearScroll(response.getScrollId());
+                            listener.onFailure(e);
+                            return;
+                        }
+                        scroll(response.getScrollId(), handler, listener);
+                    }
+
+                    @Override
+                    public void onFailure(final Throwable e) {
+                        clearScroll(scrollId);
+                        listener.onFailure(e);
+                    }
+                });
+    }
+
+    private void clearScroll(final String scrollId) {
+        if (scrollId == null) {
+            return;
+        }
+        client.prepareClearScroll().addScrollId(scrollId)
+                .execute(new ActionListener<ClearScrollResponse>() {
+                    @Override
+                    public void onResponse(final ClearScrollResponse response) {
+                        // nothing
+                    }
+
+                    @Override
+                    public void onFailure(final Throwable e) {
+                        if (logger.isDebugEnabled()) {
+                            logger.debug("Failed to clear a scroll.", e);
+                        }
+                    }
+                });
+    }
+
+    private interface PageHandler {
+        void handle(SearchHit[] hits);
+    }
+
+    static class ConstraintDoc {
+        private final long version;
+
+        private final String[] paths;
+
+        private final String[] methods;
+
+        private final String[] roles;
+
+        private ConstraintDoc(final long version, final String[] paths,
+                final String[] methods, final String[] roles) {
+            this.version = version;
+            this.paths = paths;
+            this.methods = methods;
+            this.roles = roles;
+        }
+    }
+
+    static class State {
+        private final Map<String, ConstraintDoc> docMap;
+
+        private final Map<String, Set<String>> pathDocMap;
+
+        private final TreeMap<String, LoginConstraint> constraintMap;
+
+        private LoginConstraint[] constraints = new LoginConstraint[0];
+
+        private Map<String, LoginConstraint> changes = Collections
+                .emptyMap();
+
+        private long loadTime;
+
+        private long deleteCount;
+
+        private State() {
+            docMap = new HashMap<String, ConstraintDoc>();
+            pathDocMap = new HashMap<String, Set<String>>();
+            constraintMap = new TreeMap<String, LoginConstraint>(
+                    PATH_COMPARATOR);
+        }
+
+        private State(final State base) {
+            docMap = new HashMap<String, ConstraintDoc>(base.docMap);
+            pathDocMap = new HashMap<String, Set<String>>(base.pathDocMap);
+            constraintMap = new TreeMap<String, LoginConstraint>(
+                    base.constraintMap);
+            constraints = base.constraints;
+            loadTime = base.loadTime;
+            deleteCount = base.deleteCount;
+        }
+
+        LoginConstraint[] getConstraints() {
+            return constraints;
+        }
+
+        Map<String, LoginConstraint> getChanges() {
+            return changes;
+        }
+    }
+}
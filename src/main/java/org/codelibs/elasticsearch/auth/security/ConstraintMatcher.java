@@ -0,0 +1,9 @@
+package org.codelibs.elasticsearch.auth.security;
+
+public interface ConstraintMatcher {
+
+    LoginConstraint match(String rawPath);
+
+    int size();
+
+}
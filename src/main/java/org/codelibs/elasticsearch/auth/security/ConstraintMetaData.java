@@ -0,0 +1,202 @@
+package org.codelibs.elasticsearch.auth.security;
+
+import java.io.IOException;
+import java.util.ArrayList;
+import java.util.Collections;
+import java.util.EnumSet;
+import java.util.List;
+import java.util.Map;
+
+import org.codelibs.elasticsearch.auth.util.MapUtil;
+import org.elasticsearch.cluster.metadata.MetaData;
+import org.elasticsearch.common.io.stream.StreamInput;
+import org.elasticsearch.common.io.stream.StreamOutput;
+import org.elasticsearch.common.xcontent.ToXContent;
+import org.elasticsearch.common.xcontent.XContentBuilder;
+import org.elasticsearch.common.xcontent.XContentParser;
+import org.elasticsearch.rest.RestRequest.Method;
+
+public class ConstraintMetaData implements MetaData.Custom {
+
+    public static final String TYPE = "auth_constraints";
+
+    public static final Factory FACTORY = new Factory();
+
+    private final long version;
+
+    private final Entry[] entries;
+
+    public ConstraintMetaData(final long version, final Entry[] entries) {
+        this.version = version;
+        this.entries = entries;
+    }
+
+    public static ConstraintMetaData create(final long version,
+            final LoginConstraint[] constraints) {
+        final Entry[] entries = new Entry[constraints.length];
+        for (int i = 0; i < constraints.length; i++) {
+            final LoginConstraint constraint = constraints[i];
+            final List<String> methodList = new ArrayList<String>();
+            final List<String[]> roleList = new ArrayList<String[]>();
+            for (final Method method : Method.values()) {
+                final String[] roles = constraint.getRoles(method);
+                if (roles.length > 0) {
+                    methodList.add(method.name());
+                    roleList.add(roles);
+                }
+            }
+            entries[i] = new Entry(constraint.getPath(),
+                    methodList.toArray(new String[methodList.size()]),
+                    roleList.toArray(new String[roleList.size()][]));
+        }
+        return new ConstraintMetaData(version, entries);
+    }
+
+    public long getVersion() {
+        return version;
+    }
+
+    public int size() {
+        return entries.length;
+    }
+
+    public ConstraintMetaData withVersion(final long version) {
+        return new ConstraintMetaData(version, entries);
+    }
+
+    public LoginConstraint[] toConstraints(final RoleRegistry roleRegistry) {
+        final LoginConstraint[] constraints = new LoginConstraint[entries.length];
+        for (int i = 0; i < entries.length; i++) {
+            final Entry entry = entries[i];
+            final LoginConstraint constraint = new LoginConstraint(
+                    roleRegistry);
+            constraint.setPath(entry.path);
+            for (int j = 0; j < entry.methods.length; j++) {
+                constraint.addCondition(new String[] { entry.methods[j] },
+                        entry.roles[j]);
+            }
+            constraints[i] = constraint;
+        }
+        return constraints;
+    }
+
+    public static class Entry {
+        private final String path;
+
+        private final String[] methods;
+
+        private final String[][] roles;
+
+        public Entry(final String path, final String[] methods,
+                final String[][] roles) {
+            this.path = path;
+            this.methods = methods;
+            this.roles = roles;
+        }
+    }
+
+    public static class Factory extends
+            MetaData.Custom.Factory<ConstraintMetaData> {
+
+        @Override
+        public String type() {
+            return TYPE;
+        }
+
+        @Override
+        public ConstraintMetaData readFrom(final StreamInput in)
+                throws IOException {
+            final long version = in.readVLong();
+            final Entry[] entries = new Entry[in.readVInt()];
+            for (int i = 0; i < entries.length; i++) {
+                final String path = in.readString();
+                final String[] methods = in.readStringArray();
+                final String[][] roles = new String[methods.length][];
+                for (int j = 0; j < methods.length; j++) {
+                    roles[j] = in.readStringArray();
+                }
+                entries[i] = new Entry(path, methods, roles);
+            }
+            return new ConstraintMetaData(version, entries);
+        }
+
+        @Override
+        public void writeTo(final ConstraintMetaData metaData,
+                final StreamOutput out) throws IOException {
+            out.writeVLong(metaData.version);
+            out.writeVInt(metaData.entries.length);
+            for (final Entry entry : metaData.entries) {
+                out.writeString(entry.path);
+                out.writeStringArray(entry.methods);
+                for (final String[] roles : entry.roles) {
+                    out.writeStringArray(roles);
+                }
+            }
+        }
+
+        @SuppressWarnings("unchecked")
+        @Override
+        public ConstraintMetaData fromXContent(final XContentParser parser)
+                throws IOException {
+            final Map<String, Object> sourceMap = parser.mapOrdered();
+            final Object versionObj = sourceMap.get("version");
+            final long version = versionObj instanceof Number ? ((Number) versionObj)
+                    .longValue() : 0;
+            final List<Entry> entryList = new ArrayList<Entry>();
+            final Object constraintsObj = sourceMap.get("constraints");
+            if (constraintsObj instanceof List) {
+                for (final Object obj : (List<Object>) constraintsObj) {
+                    if (!(obj instanceof Map)) {
+                        continue;
+                    }
+                    final Map<String, Object> constraintMap = (Map<String, Object>) obj;
+                    final String path = MapUtil.getAsString(constraintMap,
+                            "path", null);
+                    final Object methodsObj = constraintMap.get("methods");
+                    if (path == null || !(methodsObj instanceof Map)) {
+                        continue;
+                    }
+                    final Map<String, Object> methodMap = (Map<String, Object>) methodsObj;
+                    final List<String> methodList = new ArrayList<String>();
+                    final List<String[]> roleList = new ArrayList<String[]>();
+                    for (final String method : methodMap.keySet()) {
+                        final List<String> roles = MapUtil.getAsList(methodMap,
+                                method, Collections.<String> emptyList());
+                        methodList.add(method);
+                        roleList.add(roles.toArray(new String[roles.size()]));
+                    }
+                    entryList.add(new Entry(path, methodList
+                            .toArray(new String[methodList.size()]), roleList
+                            .toArray(new String[roleList.size()][])));
+                }
+            }
+            return new ConstraintMetaData(version,
+                    entryList.toArray(new Entry[entryList.size()]));
+        }
+
+        @Override
+        public void toXContent(final ConstraintMetaData metaData,
+                final XContentBuilder builder, final ToXContent.Params params)
+                throws IOException {
+            builder.field("version", metaData.version);
+            builder.startArray("constraints");
+            for (final Entry entry : metaData.entries) {
+                builder.startObject();
+                builder.field("path", entry.path);
+                builder.startObject("methods");
+                for (int i = 0; i < entry.methods.length; i++) {
+                    builder.array(entry.methods[i], entry.roles[i]);
+                }
+                builder.endObject();
+                builder.endObject();
+            }
+            builder.endArray();
+        }
+
+        @Override
+        public EnumSet<MetaData.XContentContext> context() {
+            // not persisted: the master loads constraints from the index again
+            return MetaData.API_ONLY;
+        }
+    }
+}
@@ -0,0 +1,272 @@
+package org.codelibs.elasticsearch.auth.security;
+
+import java.util.Map;
+import java.util.TreeMap;
+
+public class ConstraintTrie implements ConstraintMatcher {
+
+    private static final char[] EMPTY_KEYS = new char[0];
+
+    private static final Node[] EMPTY_NODES = new Node[0];
+
+    private final Node root;
+
+    private final int size;
+
+    public ConstraintTrie(final LoginConstraint[] constraints) {
+        root = new Node("");
+        for (final LoginConstraint constraint : constraints) {
+            insert(constraint);
+        }
+        root.freeze();
+        size = constraints.length;
+    }
+
+    private ConstraintTrie(final Node root, final int size) {
+        this.root = root;
+        this.size = size;
+    }
+
+    // unchanged nodes are shared, and a null constraint removes the path
+    public ConstraintTrie update(final Map<String, LoginConstraint> changes,
+            final int size) {
+        Node newRoot = root;
+        for (final Map.Entry<String, LoginConstraint> entry : changes
+                .entrySet()) {
+            newRoot = put(newRoot,
+                    ConstraintAutomaton.unescape(entry.getKey()), 0,
+                    entry.getValue());
+        }
+        return new ConstraintTrie(newRoot, size);
+    }
+
+    @Override
+    public LoginConstraint match(final String rawPath) {
+        LoginConstraint matched = root.constraint;
+        Node node = root;
+        int pos = 0;
+        final int length = rawPath.length();
+        while (pos < length) {
+            final Node child = node.getChild(rawPath.charAt(pos));
+            if (child == null
+                    || !rawPath.regionMatches(pos, child.label, 0,
+                            child.label.length())) {
+                break;
+            }
+            pos += child.label.length();
+            node = child;
+            if (node.constraint != null) {
+                matched = node.constraint;
+            }
+        }
+        return matched;
+    }
+
+    @Override
+    public int size() {
+        return size;
+    }
+
+    Node getRoot() {
+        return root;
+    }
+
+    private void insert(final LoginConstraint constraint) {
+        final String path = ConstraintAutomaton.unescape(constraint.getPath());
+        Node node = root;
+        int pos = 0;
+        while (pos < path.length()) {
+            final char ch = path.charAt(pos);
+            Node child = node.childMap.get(ch);
+            if (child == null) {
+                child = new Node(path.substring(pos));
+                child.constraint = constraint;
+                node.childMap.put(ch, child);
+                return;
+            }
+
+            final String label = child.label;
+            int common = 0;
+            while (common < label.length() && pos + common < path.length()
+                    && label.charAt(common) == path.charAt(pos + common)) {
+                common++;
+            }
+            if (common < label.length()) {
+                // split the edge at the common prefix
+                final Node middle = new Node(label.substring(0, common));
+                child.label = label.substring(common);
+                middle.childMap.put(child.label.charAt(0), child);
+                node.childMap.put(ch, middle);
+                child = middle;
+            }
+            node = child;
+            pos += common;
+        }
+        node.constraint = constraint;
+    }
+
+    private static Node put(final Node node, final String path,
+            final int pos, final LoginConstraint constraint) {
+        if (pos == path.length()) {
+            return new Node(node.label, constraint, node.keys, node.children);
+        }
+
+        final char ch = path.charAt(pos);
+        final int index = node.indexOf(ch);
+        if (index < 0) {
+            if (constraint == null) {
+                return node;
+            }
+            final Node leaf = new Node(path.substring(pos), constraint,
+                    EMPTY_KEYS, EMPTY_NODES);
+            return node.insertChild(-index - 1, ch, leaf);
+        }
+
+        final Node child = node.children[index];
+        final String label = child.label;
+        int common = 0;
+        while (common < label.length() && pos + common < path.length()
+                && label.charAt(common) == path.charAt(pos + common)) {
+            common++;
+        }
+        if (common < label.length()) {
+            if (constraint == null) {
+                return node;
+            }
+            // split the edge at the common prefix
+            final Node tail = new Node(label.substring(common),
+                    child.constraint, child.keys, child.children);
+            final Node middle = new Node(label.substring(0, common), null,
+                    new char[] { tail.label.charAt(0) }, new Node[] { tail });
+            return node.replaceChild(index,
+                    put(middle, path, pos + common, constraint));
+        }
+
+        final Node newChild = put(child, path, pos + common, constraint);
+        if (newChild == child) {
+            return node;
+        }
+        return node.replaceChild(index, compact(newChild));
+    }
+
+    private static Node compact(final Node node) {
+        if (node.constraint != null || node.keys.length > 1) {
+            return node;
+        }
+        if (node.keys.length == 0) {
+            return null;
+        }
+        // merge the edge with the only child
+        final Node child = node.children[0];
+        return new Node(node.label + child.label, child.constraint,
+                child.keys, child.children);
+    }
+
+    static class Node {
+        private String label;
+
+        private LoginConstraint constraint;
+
+        private Map<Character, Node> childMap = new TreeMap<Character, Node>();
+
+        private char[] keys;
+
+        private Node[] children;
+
+        Node(final String label) {
+            this.label = label;
+        }
+
+        private Node(final String label, final LoginConstraint constraint,
+                final char[] keys, final Node[] children) {
+            this.label = label;
+            this.constraint = constraint;
+            this.keys = keys;
+            this.children = children;
+            childMap = null;
+        }
+
+        String getLabel() {
+            return label;
+        }
+
+        LoginConstraint getConstraint() {
+            return constraint;
+        }
+
+        char[] getKeys() {
+            return keys;
+        }
+
+        Node[] getChildren() {
+            return children;
+        }
+
+        Node getChild(final char ch) {
+            final int index = indexOf(ch);
+            return index >= 0 ? children[index] : null;
+        }
+
+        private int indexOf(final char ch) {
+            int low = 0;
+            int high = keys.length - 1;
+            while (low <= high) {
+                final int mid = (low + high) >>> 1;
+                final char key = keys[mid];
+                if (key < ch) {
+                    low = mid + 1;
+                } else if (key > ch) {
+                    high = mid - 1;
+                } else {
+                    return mid;
+                }
+            }
+            return -(low + 1);
+        }
+
+        private Node insertChild(final int index, final char ch,
+                final Node child) {
+            final char[] newKeys = new char[keys.length + 1];
+            final Node[] newChildren = new Node[children.length + 1];
+            System.arraycopy(keys, 0, newKeys, 0, index);
+            System.arraycopy(children, 0, newChildren, 0, index);
+            newKeys[index] = ch;
+            newChildren[index] = child;
+            System.arraycopy(keys, index, newKeys, index + 1, keys.length
+                    - index);
+            System.arraycopy(children, index, newChildren, index + 1,
+                    children.length - index);
+            return new Node(label, constraint, newKeys, newChildren);
+        }
+
+        private Node replaceChild(final int index, final Node child) {
+            if (child == null) {
+                final char[] newKeys = new char[keys.length - 1];
+                final Node[] newChildren = new Node[children.length - 1];
+                System.arraycopy(keys, 0, newKeys, 0, index);
+                System.arraycopy(children, 0, newChildren, 0, index);
+                System.arraycopy(keys, index + 1, newKeys, index, keys.length
+                        - index - 1);
+                System.arraycopy(children, index + 1, newChildren, index,
+                        children.length - index - 1);
+                return new Node(label, constraint, newKeys, newChildren);
+            }
+            final Node[] newChildren = children.clone();
+            newChildren[index] = child;
+            return new Node(label, constraint, keys, newChildren);
+        }
+
+        void freeze() {
+            keys = new char[childMap.size()];
+            children = new Node[childMap.size()];
+            int i = 0;
+            for (final Map.Entry<Character, Node> entry : childMap.entrySet()) {
+                keys[i] = entry.getKey();
+                children[i] = entry.getValue();
+                children[i].freeze();
+                i++;
+            }
+            childMap = null;
+        }
+    }
+}
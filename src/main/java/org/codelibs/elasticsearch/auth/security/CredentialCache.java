@@ -0,0 +1,115 @@
+package org.codelibs.elasticsearch.auth.security;
+
+import java.nio.charset.Charset;
+import java.security.MessageDigest;
+import java.security.NoSuchAlgorithmException;
+import java.security.SecureRandom;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicLong;
+
+import org.elasticsearch.ElasticsearchException;
+import org.elasticsearch.common.cache.Cache;
+import org.elasticsearch.common.cache.CacheBuilder;
+import org.elasticsearch.common.settings.Settings;
+import org.elasticsearch.common.unit.TimeValue;
+
+public class CredentialCache {
+
+    private static final Charset UTF_8 = Charset.forName("UTF-8");
+
+    private static final int SALT_LENGTH = 16;
+
+    private final SecureRandom random = new SecureRandom();
+
+    private final AtomicLong generation = new AtomicLong();
+
+    private final Cache<String, CredentialEntry> cache;
+
+    public CredentialCache(final Settings settings) {
+        final long maxSize = settings.getAsLong(
+                "auth.authenticator.index.cache.size", 0L);
+        final TimeValue expire = settings.getAsTime(
+                "auth.authenticator.index.cache.expire",
+                TimeValue.timeValueMinutes(5));
+        if (maxSize > 0) {
+            cache = CacheBuilder.newBuilder().maximumSize(maxSize)
+                    .expireAfterWrite(expire.millis(), TimeUnit.MILLISECONDS)
+                    .build();
+        } else {
+            cache = null;
+        }
+    }
+
+    public boolean isEnabled() {
+        return cache != null;
+    }
+
+    public long getGeneration() {
+        return generation.get();
+    }
+
+    public String[] get(final String username, final String password) {
+        if (cache == null || password == null) {
+            return null;
+        }
+        final CredentialEntry entry = cache.getIfPresent(username);
+        if (entry == null
+                || !MessageDigest.isEqual(entry.digest,
+                        digest(entry.salt, password))) {
+            return null;
+        }
+        return entry.roles;
+    }
+
+    public void put(final String username, final String password,
+            final String[] roles, final long generation) {
+        if (cache == null || password == null) {
+            return;
+        }
+        final byte[] salt = new byte[SALT_LENGTH];
+        random.nextBytes(salt);
+        final CredentialEntry entry = new CredentialEntry(salt, digest(salt,
+                password), roles);
+        // skip an entry loaded before the latest invalidation
+        synchronized (this) {
+            if (this.generation.get() == generation) {
+                cache.put(username, entry);
+            }
+        }
+    }
+
+    public void invalidate(final String username) {
+        if (cache == null) {
+            return;
+        }
+        synchronized (this) {
+            generation.incrementAndGet();
+            cache.invalidate(username);
+        }
+    }
+
+    private byte[] digest(final byte[] salt, final String password) {
+        try {
+            final MessageDigest digest = MessageDigest.getInstance("SHA-256");
+            digest.update(salt);
+            return digest.digest(password.getBytes(UTF_8));
+        } catch (final NoSuchAlgorithmException e) {
+            throw new ElasticsearchException("SHA-256 is not supported.", e);
+        }
+    }
+
+    private static class CredentialEntry {
+        private final byte[] salt;
+
+        private final byte[] digest;
+
+        private final String[] roles;
+
+        private CredentialEntry(final byte[] salt, final byte[] digest,
+                final String[] roles) {
+            this.salt = salt;
+            this.digest = digest;
+            this.roles = roles;
+        }
+    }
+}
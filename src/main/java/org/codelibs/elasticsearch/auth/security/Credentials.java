@@ -0,0 +1,77 @@
+package org.codelibs.elasticsearch.auth.security;
+
+import java.io.IOException;
+
+import org.elasticsearch.common.bytes.BytesReference;
+import org.elasticsearch.common.xcontent.XContentFactory;
+import org.elasticsearch.common.xcontent.XContentParser;
+import org.elasticsearch.common.xcontent.XContentType;
+import org.elasticsearch.rest.RestRequest;
+
+public class Credentials {
+
+    private final String username;
+
+    private final String password;
+
+    public Credentials(final String username, final String password) {
+        this.username = username;
+        this.password = password;
+    }
+
+    public String getUsername() {
+        return username;
+    }
+
+    public String getPassword() {
+        return password;
+    }
+
+    public static Credentials parse(final RestRequest request,
+            final String usernameKey, final String passwordKey)
+            throws IOException {
+        String username = request.param(usernameKey);
+        String password = request.param(passwordKey);
+        final BytesReference content = request.content();
+        if (content == null || content.length() == 0) {
+            return new Credentials(username, password);
+        }
+
+        final XContentType xContentType = XContentFactory.xContentType(content);
+        if (xContentType == null) {
+            return new Credentials(username, password);
+        }
+        XContentParser parser = null;
+        try {
+            parser = XContentFactory.xContent(xContentType).createParser(
+                    content);
+            if (parser.nextToken() != XContentParser.Token.START_OBJECT) {
+                return new Credentials(username, password);
+            }
+            boolean hasUsername = false;
+            boolean hasPassword = false;
+            XContentParser.Token token;
+            while (!(hasUsername && hasPassword)
+                    && (token = parser.nextToken()) == XContentParser.Token.FIELD_NAME) {
+                final String name = parser.currentName();
+                token = parser.nextToken();
+                if (token.isValue()) {
+                    if (!hasUsername && usernameKey.equals(name)) {
+                        username = parser.text();
+                        hasUsername = true;
+                    } else if (!hasPassword && passwordKey.equals(name)) {
+                        password = parser.text();
+                        hasPassword = true;
+                    }
+                } else {
+                    parser.skipChildren();
+                }
+            }
+        } finally {
+            if (parser != null) {
+                parser.close();
+            }
+        }
+        return new Credentials(username, password);
+    }
+}
@@ -0,0 +1,13 @@
+package org.codelibs.elasticsearch.auth.security;
+
+import org.elasticsearch.action.ActionListener;
+
+public interface CredentialsAuthenticator extends Authenticator {
+
+    void login(Credentials credentials, ActionListener<String[]> listener);
+
+    String getUsernameKey();
+
+    String getPasswordKey();
+
+}
@@ -0,0 +1,243 @@
+package org.codelibs.elasticsearch.auth.security;
+
+import java.io.File;
+import java.util.Collections;
+import java.util.HashMap;
+import java.util.Map;
+
+import org.codelibs.elasticsearch.auth.AuthException;
+import org.codelibs.elasticsearch.auth.service.AuthService;
+import org.codelibs.elasticsearch.auth.util.MapUtil;
+import org.elasticsearch.ElasticsearchException;
+import org.elasticsearch.action.ActionListener;
+import org.elasticsearch.common.component.AbstractLifecycleComponent;
+import org.elasticsearch.common.inject.Inject;
+import org.elasticsearch.common.io.Streams;
+import org.elasticsearch.common.logging.ESLogger;
+import org.elasticsearch.common.logging.Loggers;
+import org.elasticsearch.common.settings.Settings;
+import org.elasticsearch.common.xcontent.XContentHelper;
+import org.elasticsearch.env.Environment;
+import org.elasticsearch.rest.RestRequest;
+import org.elasticsearch.rest.RestStatus;
+import org.elasticsearch.threadpool.ThreadPool;
+import org.elasticsearch.watcher.FileChangesListener;
+import org.elasticsearch.watcher.FileWatcher;
+import org.elasticsearch.watcher.ResourceWatcherService;
+
+public class FileAuthenticator extends
+        AbstractLifecycleComponent<FileAuthenticator> implements
+        CredentialsAuthenticator {
+    private static final ESLogger logger = Loggers
+            .getLogger(FileAuthenticator.class);
+
+    protected AuthService authService;
+
+    protected ResourceWatcherService resourceWatcherService;
+
+    protected File userFile;
+
+    protected String usernameKey;
+
+    protected String passwordKey;
+
+    protected PasswordHasherRegistry passwordHasherRegistry;
+
+    private volatile Map<String, FileUser> userMap = Collections.emptyMap();
+
+    @Inject
+    public FileAuthenticator(final Settings settings,
+            final Environment environment, final ThreadPool threadPool,
+            final ResourceWatcherService resourceWatcherService,
+            final AuthService authService) {
+        super(settings);
+        this.resourceWatcherService = resourceWatcherService;
+        this.authService = authService;
+
+        passwordHasherRegistry = new PasswordHasherRegistry(threadPool);
+        // parameters for hashing are read from each user
+        passwordHasherRegistry.register(new Sha512PasswordHasher());
+        passwordHasherRegistry.register(new Pbkdf2PasswordHasher(10000, 16,
+                32));
+
+        final String path = settings.get("auth.authenticator.file.path");
+        if (path != null) {
+            final File file = new File(path);
+            userFile = file.isAbsolute() ? file : new File(
+                    environment.configFile(), path);
+        }
+        usernameKey = settings.get("auth.authenticator.file.username",
+                "username");
+        passwordKey = settings.get("auth.authenticator.file.password",
+                "password");
+    }
+
+    @Override
+    protected void doStart() throws ElasticsearchException {
+        if (userFile == null) {
+            return;
+        }
+
+        logger.info("Registering FileAuthenticator.");
+        loadUsers();
+        final FileWatcher fileWatcher = new FileWatcher(userFile);
+        fileWatcher.addListener(new FileChangesListener() {
+            @Override
+            public void onFileCreated(final File file) {
+                loadUsers();
+            }
+
+            @Override
+            public void onFileChanged(final File file) {
+                loadUsers();
+            }
+
+            @Override
+            public void onFileDeleted(final File file) {
+                logger.warn("{} is deleted. Keeping {} user(s).",
+                        userFile.getAbsolutePath(), userMap.size());
+            }
+        });
+        resourceWatcherService.add(fileWatcher);
+        authService.registerAuthenticator("file", this);
+    }
+
+    @Override
+    protected void doStop() throws ElasticsearchException {
+
+    }
+
+    @Override
+    protected void doClose() throws ElasticsearchException {
+
+    }
+
+    @SuppressWarnings("unchecked")
+    protected void loadUsers() {
+        try {
+            final Map<String, Object> sourceMap = XContentHelper.convertToMap(
+                    Streams.copyToByteArray(userFile), false).v2();
+            final Map<String, FileUser> newUserMap = new HashMap<String, FileUser>();
+            final Object usersObj = sourceMap.get("users");
+            if (usersObj instanceof Map) {
+                for (final Map.Entry<String, Object> entry : ((Map<String, Object>) usersObj)
+                        .entrySet()) {
+                    if (!(entry.getValue() instanceof Map)) {
+                        logger.warn("Invalid user settings: " + entry.getKey());
+                        continue;
+                    }
+                    final Map<String, Object> userSourceMap = (Map<String, Object>) entry
+                            .getValue();
+                    final String hash = MapUtil.getAsString(userSourceMap,
+                            PasswordHasher.PASSWORD_KEY, null);
+                    if (hash == null) {
+                        logger.warn("No password: " + entry.getKey());
+                        continue;
+                    }
+                    newUserMap.put(entry.getKey(), new FileUser(
+                            userSourceMap, MapUtil.getAsArray(userSourceMap,
+                                    "roles", new String[0])));
+                }
+            }
+            userMap = newUserMap;
+            logger.info("Loaded {} user(s) from {}.", newUserMap.size(),
+                    userFile.getAbsolutePath());
+        } catch (final Exception e) {
+            logger.warn("Failed to load users from {}.", e,
+                    userFile.getAbsolutePath());
+        }
+    }
+
+    @Override
+    public String getUsernameKey() {
+        return usernameKey;
+    }
+
+    @Override
+    public String getPasswordKey() {
+        return passwordKey;
+    }
+
+    @Override
+    public void login(final RestRequest request,
+            final ActionListener<String[]> listener) {
+        final Credentials credentials;
+        try {
+            credentials = Credentials.parse(request, usernameKey, passwordKey);
+        } catch (final Exception e) {
+            listener.onFailure(e);
+            return;
+        }
+        login(credentials, listener);
+    }
+
+    @Override
+    public void login(final Credentials credentials,
+            final ActionListener<String[]> listener) {
+        final String username = credentials.getUsername();
+        final String password = credentials.getPassword();
+
+        if (username == null || password == null) {
+            listener.onResponse(new String[0]);
+            return;
+        }
+
+        final FileUser user = userMap.get(username);
+        if (user == null) {
+            listener.onResponse(new String[0]);
+            return;
+        }
+
+        passwordHasherRegistry.execute(new Runnable() {
+            @Override
+            public void run() {
+                try {
+                    if (passwordHasherRegistry.verify(password,
+                            user.sourceMap)) {
+                        if (logger.isDebugEnabled()) {
+                            logger.debug(username + " is logged in.");
+                        }
+                        listener.onResponse(user.roles);
+                    } else {
+                        listener.onResponse(new String[0]);
+                    }
+                } catch (final Exception e) {
+                    listener.onFailure(e);
+                }
+            }
+        }, listener);
+    }
+
+    @Override
+    public void createUser(final String username, final String password,
+            final String[] roles, final ActionListener<Void> listener) {
+        listener.onFailure(new AuthException(RestStatus.BAD_REQUEST,
+                "Could not create " + username + ". Users are read-only."));
+    }
+
+    @Override
+    public void updateUser(final String username, final String password,
+            final String[] roles, final ActionListener<Void> listener) {
+        listener.onFailure(new AuthException(RestStatus.BAD_REQUEST,
+                "Could not update " + username + ". Users are read-only."));
+    }
+
+    @Override
+    public void deleteUser(final String username,
+            final ActionListener<Void> listener) {
+        listener.onFailure(new AuthException(RestStatus.BAD_REQUEST,
+                "Could not delete " + username + ". Users are read-only."));
+    }
+
+    private static class FileUser {
+        private final Map<String, Object> sourceMap;
+
+        private final String[] roles;
+
+        private FileUser(final Map<String, Object> sourceMap,
+                final String[] roles) {
+            this.sourceMap = sourceMap;
+            this.roles = roles;
+        }
+    }
+}
@@ -7,6 +7,7 @@ import java.util.Map;
 import org.apache.commons.codec.digest.DigestUtils;
 import org.codelibs.elasticsearch.auth.AuthException;
 import org.codelibs.elasticsearch.auth.service.AuthService;
+import org.codelibs.elasticsearch.auth.transport.UserEventRequest;
 import org.codelibs.elasticsearch.auth.util.MapUtil;
 import org.elasticsearch.ElasticsearchException;
 import org.elasticsearch.action.ActionListener;
@@ -15,26 +16,41 @@ import org.elasticsearch.action.get.GetResponse;
 import org.elasticsearch.action.index.IndexResponse;
 import org.elasticsearch.action.update.UpdateResponse;
 import org.elasticsearch.client.Client;
-import org.elasticsearch.common.bytes.BytesReference;
+import org.elasticsearch.cluster.ClusterService;
+import org.elasticsearch.cluster.node.DiscoveryNode;
+import org.elasticsearch.cluster.node.DiscoveryNodes;
 import org.elasticsearch.common.component.AbstractLifecycleComponent;
 import org.elasticsearch.common.inject.Inject;
 import org.elasticsearch.common.logging.ESLogger;
 import org.elasticsearch.common.logging.Loggers;
 import org.elasticsearch.common.settings.Settings;
 import org.elasticsearch.common.xcontent.XContentBuilder;
-import org.elasticsearch.common.xcontent.XContentFactory;
-import org.elasticsearch.common.xcontent.XContentParser;
-import org.elasticsearch.common.xcontent.XContentType;
 import org.elasticsearch.rest.RestRequest;
 import org.elasticsearch.rest.RestStatus;
+import org.elasticsearch.threadpool.ThreadPool;
+import org.elasticsearch.transport.BaseTransportRequestHandler;
+import org.elasticsearch.transport.EmptyTransportResponseHandler;
+import org.elasticsearch.transport.TransportChannel;
+import org.elasticsearch.transport.TransportException;
+import org.elasticsearch.transport.TransportResponse;
+import org.elasticsearch.transport.TransportService;
 
 public class IndexAuthenticator extends
-        AbstractLifecycleComponent<IndexAuthenticator> implements Authenticator {
+        AbstractLifecycleComponent<IndexAuthenticator> implements
+        CredentialsAuthenticator {
     private static final ESLogger logger = Loggers
             .getLogger(IndexAuthenticator.class);;
 
+    private static final String USER_EVENT_ACTION = "internal:auth/user/event";
+
     protected Client client;
 
+    protected ThreadPool threadPool;
+
+    protected ClusterService clusterService;
+
+    protected TransportService transportService;
+
     protected AuthService authService;
 
     protected String authIndex;
@@ -45,11 +61,22 @@ public class IndexAuthenticator extends
 
     protected String passwordKey;
 
+    protected String hashAlgorithm;
+
+    protected PasswordHasherRegistry passwordHasherRegistry;
+
+    protected CredentialCache credentialCache;
+
     @Inject
     public IndexAuthenticator(final Settings settings, final Client client,
+            final ThreadPool threadPool, final ClusterService clusterService,
+            final TransportService transportService,
             final AuthService authService) {
         super(settings);
         this.client = client;
+        this.threadPool = threadPool;
+        this.clusterService = clusterService;
+        this.transportService = transportService;
         this.authService = authService;
 
         authIndex = settings.get("auth.authenticator.index.index", "auth");
@@ -58,7 +85,20 @@ public class IndexAuthenticator extends
                 "username");
         passwordKey = settings.get("auth.authenticator.index.password",
                 "password");
-
+        hashAlgorithm = settings.get("auth.authenticator.index.hash.algorithm",
+                Sha512PasswordHasher.ALGORITHM);
+
+        passwordHasherRegistry = new PasswordHasherRegistry(threadPool);
+        registerPasswordHasher(new Sha512PasswordHasher());
+        registerPasswordHasher(new Pbkdf2PasswordHasher(settings.getAsInt(
+                "auth.authenticator.index.hash.iterations", 10000),
+                settings.getAsInt("auth.authenticator.index.hash.salt_length",
+                        16), settings.getAsInt(
+                        "auth.authenticator.index.hash.key_length", 32)));
+
+        credentialCache = new CredentialCache(settings);
+        transportService.registerHandler(USER_EVENT_ACTION,
+                new UserEventRequestHandler());
     }
 
     @Override
@@ -77,33 +117,34 @@ public class IndexAuthenticator extends
 
     }
 
+    @Override
+    public String getUsernameKey() {
+        return usernameKey;
+    }
+
+    @Override
+    public String getPasswordKey() {
+        return passwordKey;
+    }
+
     @Override
     public void login(final RestRequest request,
             final ActionListener<String[]> listener) {
-        String username = request.param(usernameKey);
-        String password = request.param(passwordKey);
-        final BytesReference content = request.content();
-        final XContentType xContentType = XContentFactory.xContentType(content);
-        XContentParser parser = null;
+        final Credentials credentials;
         try {
-            parser = XContentFactory.xContent(xContentType).createParser(
-                    content);
-            final XContentParser.Token t = parser.nextToken();
-            if (t != null) {
-                final Map<String, Object> contentMap = parser.map();
-                username = MapUtil.getAsString(contentMap, usernameKey,
-                        username);
-                password = MapUtil.getAsString(contentMap, passwordKey,
-                        password);
-            }
+            credentials = Credentials.parse(request, usernameKey, passwordKey);
         } catch (final Exception e) {
             listener.onFailure(e);
             return;
-        } finally {
-            if (parser != null) {
-                parser.close();
-            }
         }
+        login(credentials, listener);
+    }
+
+    @Override
+    public void login(final Credentials credentials,
+            final ActionListener<String[]> listener) {
+        final String username = credentials.getUsername();
+        final String password = credentials.getPassword();
 
         if (username == null) {
             listener.onResponse(new String[0]);
@@ -116,6 +157,16 @@ public class IndexAuthenticator extends
 
     private void processLogin(final String username, final String password,
             final ActionListener<String[]> listener) {
+        final String[] cachedRoles = credentialCache.get(username, password);
+        if (cachedRoles != null) {
+            if (logger.isDebugEnabled()) {
+                logger.debug(username + " is logged in by the cache.");
+            }
+            listener.onResponse(cachedRoles);
+            return;
+        }
+
+        final long generation = credentialCache.getGeneration();
         client.prepareGet(authIndex, userType, getUserId(username)).execute(
                 new ActionListener<GetResponse>() {
 
@@ -123,22 +174,35 @@ public class IndexAuthenticator extends
                     public void onResponse(final GetResponse response) {
                         final Map<String, Object> sourceMap = response
                                 .getSource();
-                        if (sourceMap != null) {
-                            final String hash = (String) sourceMap
-                                    .get("password");
-                            if (hash != null
-                                    && hash.equals(hashPassword(password))) {
-                                if (logger.isDebugEnabled()) {
-                                    logger.debug(sourceMap.get("username")
-                                            + " is logged in.");
+                        if (sourceMap == null) {
+                            listener.onResponse(new String[0]);
+                            return;
+                        }
+
+                        executeHash(new Runnable() {
+                            @Override
+                            public void run() {
+                                try {
+                                    if (verifyPassword(password, sourceMap)) {
+                                        if (logger.isDebugEnabled()) {
+                                            logger.debug(sourceMap
+                                                    .get("username")
+                                                    + " is logged in.");
+                                        }
+                                        final String[] roles = MapUtil
+                                                .getAsArray(sourceMap, "roles",
+                                                        new String[0]);
+                                        credentialCache.put(username,
+                                                password, roles, generation);
+                                        listener.onResponse(roles);
+                                    } else {
+                                        listener.onResponse(new String[0]);
+                                    }
+                                } catch (final Exception e) {
+                                    listener.onFailure(e);
                                 }
-                                listener.onResponse(MapUtil.getAsArray(
-                                        sourceMap, "roles", new String[0]));
-                                return;
                             }
-                        }
-                        listener.onResponse(new String[0]);
-                        return;
+                        }, listener);
                     }
 
                     @Override
@@ -151,43 +215,68 @@ public class IndexAuthenticator extends
     @Override
     public void createUser(final String username, final String password,
             final String[] roles, final ActionListener<Void> listener) {
-        try {
-            final XContentBuilder builder = jsonBuilder() //
-                    .startObject() //
-                    .field("username", username) //
-                    .field("password", hashPassword(password)) //
-                    .field("roles", roles) //
-                    .endObject();
-            client.prepareIndex(authIndex, userType, getUserId(username))
-                    .setSource(builder).setRefresh(true)
-                    .execute(new ActionListener<IndexResponse>() {
-                        @Override
-                        public void onResponse(final IndexResponse response) {
-                            listener.onResponse(null);
-                        }
+        executeHash(new Runnable() {
+            @Override
+            public void run() {
+                try {
+                    final XContentBuilder builder = jsonBuilder() //
+                            .startObject() //
+                            .field("username", username);
+                    getPasswordHasher().hash(password, builder);
+                    builder.field("roles", roles) //
+                            .endObject();
+                    client.prepareIndex(authIndex, userType,
+                            getUserId(username)).setSource(builder)
+                            .setRefresh(true)
+                            .execute(new ActionListener<IndexResponse>() {
+                                @Override
+                                public void onResponse(
+                                        final IndexResponse response) {
+                                    invalidateUser(username);
+                                    listener.onResponse(null);
+                                }
 
-                        @Override
-                        public void onFailure(final Throwable e) {
-                            listener.onFailure(new AuthException(
-                                    RestStatus.INTERNAL_SERVER_ERROR,
-                                    "Could not create " + username, e));
-                        }
-                    });
-        } catch (final Exception e) {
-            listener.onFailure(new AuthException(
-                    RestStatus.INTERNAL_SERVER_ERROR, "Could not create "
-                            + username, e));
-        }
+                                @Override
+                                public void onFailure(final Throwable e) {
+                                    invalidateUser(username);
+                                    listener.onFailure(new AuthException(
+                                            RestStatus.INTERNAL_SERVER_ERROR,
+                                            "Could not create " + username, e));
+                                }
+                            });
+                } catch (final Exception e) {
+                    listener.onFailure(new AuthException(
+                            RestStatus.INTERNAL_SERVER_ERROR,
+                            "Could not create " + username, e));
+                }
+            }
+        }, listener);
     }
 
     @Override
     public void updateUser(final String username, final String password,
             final String[] roles, final ActionListener<Void> listener) {
+        if (password == null) {
+            processUpdateUser(username, null, roles, listener);
+            return;
+        }
+
+        executeHash(new Runnable() {
+            @Override
+            public void run() {
+                processUpdateUser(username, password, roles, listener);
+            }
+        }, listener);
+    }
+
+    private void processUpdateUser(final String username,
+            final String password, final String[] roles,
+            final ActionListener<Void> listener) {
         try {
             final XContentBuilder builder = jsonBuilder().startObject()
                     .field("doc").startObject();
             if (password != null) {
-                builder.field("password", hashPassword(password));
+                getPasswordHasher().hash(password, builder);
             }
             if (roles != null) {
                 builder.field("roles", roles);
@@ -200,6 +289,7 @@ public class IndexAuthenticator extends
 
                         @Override
                         public void onResponse(final UpdateResponse response) {
+                            invalidateUser(username);
                             if (!userId.equals(response.getId())) {
                                 listener.onFailure(new AuthException(
                                         RestStatus.BAD_REQUEST,
@@ -211,6 +301,7 @@ public class IndexAuthenticator extends
 
                         @Override
                         public void onFailure(final Throwable e) {
+                            invalidateUser(username);
                             listener.onFailure(new AuthException(
                                     RestStatus.INTERNAL_SERVER_ERROR,
                                     "Could not update " + username, e));
@@ -233,6 +324,7 @@ public class IndexAuthenticator extends
 
                     @Override
                     public void onResponse(final DeleteResponse response) {
+                        invalidateUser(username);
                         if (response.isFound()) {
                             listener.onResponse(null);
                         } else {
@@ -244,6 +336,7 @@ public class IndexAuthenticator extends
 
                     @Override
                     public void onFailure(final Throwable e) {
+                        invalidateUser(username);
                         listener.onFailure(new AuthException(
                                 RestStatus.INTERNAL_SERVER_ERROR,
                                 "Could not delete " + username, e));
@@ -252,15 +345,66 @@ public class IndexAuthenticator extends
 
     }
 
+    protected void invalidateUser(final String username) {
+        credentialCache.invalidate(username);
+
+        final DiscoveryNodes nodes = clusterService.state().nodes();
+        final UserEventRequest request = new UserEventRequest(username);
+        for (final DiscoveryNode node : nodes) {
+            if (node.id().equals(nodes.localNodeId())) {
+                continue;
+            }
+            transportService.sendRequest(node, USER_EVENT_ACTION, request,
+                    new EmptyTransportResponseHandler(ThreadPool.Names.SAME) {
+                        @Override
+                        public void handleException(final TransportException exp) {
+                            logger.warn("Failed to send a user event to {}",
+                                    exp, node);
+                        }
+                    });
+        }
+    }
+
     protected String getUserId(final String username) {
         return DigestUtils.sha512Hex(username);
     }
 
-    protected String hashPassword(final String password) {
-        if (password == null) {
-            return "";
-        }
-        return DigestUtils.sha512Hex(password);
+    public void registerPasswordHasher(final PasswordHasher passwordHasher) {
+        passwordHasherRegistry.register(passwordHasher);
+    }
+
+    protected PasswordHasher getPasswordHasher() {
+        return passwordHasherRegistry.get(hashAlgorithm);
+    }
+
+    protected boolean verifyPassword(final String password,
+            final Map<String, Object> sourceMap) {
+        return passwordHasherRegistry.verify(password, sourceMap);
     }
 
+    protected void executeHash(final Runnable runnable,
+            final ActionListener<?> listener) {
+        passwordHasherRegistry.execute(runnable, listener);
+    }
+
+    private class UserEventRequestHandler extends
+            BaseTransportRequestHandler<UserEventRequest> {
+
+        @Override
+        public UserEventRequest newInstance() {
+            return new UserEventRequest();
+        }
+
+        @Override
+        public void messageReceived(final UserEventRequest request,
+                final TransportChannel channel) throws Exception {
+            credentialCache.invalidate(request.getUsername());
+            channel.sendResponse(TransportResponse.Empty.INSTANCE);
+        }
+
+        @Override
+        public String executor() {
+            return ThreadPool.Names.SAME;
+        }
+    }
 }
@@ -1,5 +1,6 @@
 package org.codelibs.elasticsearch.auth.security;
 
+import java.util.BitSet;
 import java.util.HashMap;
 import java.util.HashSet;
 import java.util.Map;
@@ -9,10 +10,20 @@ import org.elasticsearch.rest.RestRequest.Method;
 
 public class LoginConstraint {
 
+    private static final BitSet EMPTY_ROLES = new BitSet();
+
     private String path;
 
     private Map<Method, Set<String>> methodMap = new HashMap<Method, Set<String>>();
 
+    private final RoleRegistry roleRegistry;
+
+    private final BitSet[] roleBits = new BitSet[Method.values().length];
+
+    public LoginConstraint(final RoleRegistry roleRegistry) {
+        this.roleRegistry = roleRegistry;
+    }
+
     public void setPath(final String path) {
         this.path = path;
     }
@@ -48,6 +59,11 @@ public class LoginConstraint {
         return new String[0];
     }
 
+    public BitSet getRoleBits(final Method method) {
+        final BitSet bitSet = roleBits[method.ordinal()];
+        return bitSet != null ? bitSet : EMPTY_ROLES;
+    }
+
     private void addRoles(final Method method, final String[] roles) {
         synchronized (methodMap) {
             Set<String> roleSet = methodMap.get(method);
@@ -55,8 +71,14 @@ public class LoginConstraint {
                 roleSet = new HashSet<String>();
                 methodMap.put(method, roleSet);
             }
+            BitSet bitSet = roleBits[method.ordinal()];
+            if (bitSet == null) {
+                bitSet = new BitSet();
+                roleBits[method.ordinal()] = bitSet;
+            }
             for (final String role : roles) {
                 roleSet.add(role);
+                bitSet.set(roleRegistry.getId(role));
             }
         }
     }
@@ -0,0 +1,20 @@
+package org.codelibs.elasticsearch.auth.security;
+
+import java.io.IOException;
+import java.util.Map;
+
+import org.elasticsearch.common.xcontent.XContentBuilder;
+
+public interface PasswordHasher {
+
+    String ALGORITHM_KEY = "algorithm";
+
+    String PASSWORD_KEY = "password";
+
+    String getAlgorithm();
+
+    void hash(String password, XContentBuilder builder) throws IOException;
+
+    boolean verify(String password, Map<String, Object> sourceMap);
+
+}
@@ -0,0 +1,64 @@
+package org.codelibs.elasticsearch.auth.security;
+
+import java.util.Map;
+import java.util.concurrent.ConcurrentHashMap;
+
+import org.codelibs.elasticsearch.auth.AuthException;
+import org.codelibs.elasticsearch.auth.util.MapUtil;
+import org.elasticsearch.action.ActionListener;
+import org.elasticsearch.common.logging.ESLogger;
+import org.elasticsearch.common.logging.Loggers;
+import org.elasticsearch.common.util.concurrent.EsRejectedExecutionException;
+import org.elasticsearch.rest.RestStatus;
+import org.elasticsearch.threadpool.ThreadPool;
+
+public class PasswordHasherRegistry {
+    private static final ESLogger logger = Loggers
+            .getLogger(PasswordHasherRegistry.class);
+
+    public static final String THREAD_POOL = "auth_hash";
+
+    private final ThreadPool threadPool;
+
+    private final Map<String, PasswordHasher> passwordHasherMap = new ConcurrentHashMap<String, PasswordHasher>();
+
+    public PasswordHasherRegistry(final ThreadPool threadPool) {
+        this.threadPool = threadPool;
+    }
+
+    public void register(final PasswordHasher passwordHasher) {
+        passwordHasherMap.put(passwordHasher.getAlgorithm(), passwordHasher);
+    }
+
+    public PasswordHasher get(final String algorithm) {
+        final PasswordHasher passwordHasher = passwordHasherMap.get(algorithm);
+        if (passwordHasher == null) {
+            throw new AuthException(RestStatus.INTERNAL_SERVER_ERROR,
+                    algorithm + " is not supported.");
+        }
+        return passwordHasher;
+    }
+
+    public boolean verify(final String password,
+            final Map<String, Object> sourceMap) {
+        final String algorithm = MapUtil.getAsString(sourceMap,
+                PasswordHasher.ALGORITHM_KEY, Sha512PasswordHasher.ALGORITHM);
+        final PasswordHasher passwordHasher = passwordHasherMap.get(algorithm);
+        if (passwordHasher == null) {
+            logger.warn("{} is not supported for {}.", algorithm,
+                    sourceMap.get("username"));
+            return false;
+        }
+        return passwordHasher.verify(password, sourceMap);
+    }
+
+    public void execute(final Runnable runnable,
+            final ActionListener<?> listener) {
+        try {
+            threadPool.executor(THREAD_POOL).execute(runnable);
+        } catch (final EsRejectedExecutionException e) {
+            listener.onFailure(new AuthException(RestStatus.TOO_MANY_REQUESTS,
+                    "Too many password hashing requests.", e));
+        }
+    }
+}
@@ -0,0 +1,90 @@
+package org.codelibs.elasticsearch.auth.security;
+
+import java.io.IOException;
+import java.security.GeneralSecurityException;
+import java.security.MessageDigest;
+import java.security.SecureRandom;
+import java.util.Map;
+
+import javax.crypto.SecretKeyFactory;
+import javax.crypto.spec.PBEKeySpec;
+
+import org.apache.commons.codec.binary.Base64;
+import org.codelibs.elasticsearch.auth.util.MapUtil;
+import org.elasticsearch.ElasticsearchException;
+import org.elasticsearch.common.xcontent.XContentBuilder;
+
+public class Pbkdf2PasswordHasher implements PasswordHasher {
+
+    public static final String ALGORITHM = "pbkdf2";
+
+    private static final String KEY_ALGORITHM = "PBKDF2WithHmacSHA1";
+
+    private static final String SALT_KEY = "salt";
+
+    private static final String ITERATIONS_KEY = "iterations";
+
+    private final SecureRandom random = new SecureRandom();
+
+    private final int iterations;
+
+    private final int saltLength;
+
+    private final int keyLength;
+
+    public Pbkdf2PasswordHasher(final int iterations, final int saltLength,
+            final int keyLength) {
+        this.iterations = iterations;
+        this.saltLength = saltLength;
+        this.keyLength = keyLength;
+    }
+
+    @Override
+    public String getAlgorithm() {
+        return ALGORITHM;
+    }
+
+    @Override
+    public void hash(final String password, final XContentBuilder builder)
+            throws IOException {
+        final byte[] salt = new byte[saltLength];
+        random.nextBytes(salt);
+        builder.field(ALGORITHM_KEY, ALGORITHM);
+        builder.field(SALT_KEY, Base64.encodeBase64String(salt));
+        builder.field(ITERATIONS_KEY, iterations);
+        builder.field(PASSWORD_KEY, Base64.encodeBase64String(hash(
+                password, salt, iterations, keyLength * 8)));
+    }
+
+    @Override
+    public boolean verify(final String password,
+            final Map<String, Object> sourceMap) {
+        final String hash = MapUtil.getAsString(sourceMap, PASSWORD_KEY,
+                null);
+        final String salt = MapUtil.getAsString(sourceMap, SALT_KEY, null);
+        final Object iterationsObj = sourceMap.get(ITERATIONS_KEY);
+        if (password == null || hash == null || salt == null
+                || !(iterationsObj instanceof Number)) {
+            return false;
+        }
+        final byte[] expected = Base64.decodeBase64(hash);
+        final byte[] actual = hash(password, Base64.decodeBase64(salt),
+                ((Number) iterationsObj).intValue(), expected.length * 8);
+        return MessageDigest.isEqual(expected, actual);
+    }
+
+    private byte[] hash(final String password, final byte[] salt,
+            final int iterations, final int keyBits) {
+        final PBEKeySpec spec = new PBEKeySpec(
+                password == null ? new char[0] : password.toCharArray(), salt,
+                iterations, keyBits);
+        try {
+            return SecretKeyFactory.getInstance(KEY_ALGORITHM)
+                    .generateSecret(spec).getEncoded();
+        } catch (final GeneralSecurityException e) {
+            throw new ElasticsearchException("Failed to hash a password.", e);
+        } finally {
+            spec.clearPassword();
+        }
+    }
+}
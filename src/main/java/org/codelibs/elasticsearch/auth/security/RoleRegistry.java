@@ -0,0 +1,49 @@
+package org.codelibs.elasticsearch.auth.security;
+
+import java.util.BitSet;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.ConcurrentMap;
+import java.util.concurrent.atomic.AtomicInteger;
+
+public class RoleRegistry {
+
+    private final ConcurrentMap<String, Integer> roleIdMap = new ConcurrentHashMap<String, Integer>();
+
+    private final AtomicInteger nextId = new AtomicInteger();
+
+    public int getId(final String role) {
+        final Integer id = roleIdMap.get(role);
+        if (id != null) {
+            return id;
+        }
+        synchronized (roleIdMap) {
+            final Integer current = roleIdMap.get(role);
+            if (current != null) {
+                return current;
+            }
+            final int newId = nextId.getAndIncrement();
+            roleIdMap.put(role, newId);
+            return newId;
+        }
+    }
+
+    public int findId(final String role) {
+        final Integer id = roleIdMap.get(role);
+        return id != null ? id : -1;
+    }
+
+    public BitSet find(final String[] roles) {
+        final BitSet bitSet = new BitSet();
+        for (final String role : roles) {
+            final int id = findId(role);
+            if (id >= 0) {
+                bitSet.set(id);
+            }
+        }
+        return bitSet;
+    }
+
+    public int size() {
+        return roleIdMap.size();
+    }
+}
@@ -0,0 +1,46 @@
+package org.codelibs.elasticsearch.auth.security;
+
+import java.io.IOException;
+import java.nio.charset.Charset;
+import java.security.MessageDigest;
+import java.util.Map;
+
+import org.apache.commons.codec.digest.DigestUtils;
+import org.elasticsearch.common.xcontent.XContentBuilder;
+
+public class Sha512PasswordHasher implements PasswordHasher {
+
+    private static final Charset UTF_8 = Charset.forName("UTF-8");
+
+    public static final String ALGORITHM = "sha512";
+
+    @Override
+    public String getAlgorithm() {
+        return ALGORITHM;
+    }
+
+    @Override
+    public void hash(final String password, final XContentBuilder builder)
+            throws IOException {
+        builder.field(ALGORITHM_KEY, ALGORITHM);
+        builder.field(PASSWORD_KEY, hash(password));
+    }
+
+    @Override
+    public boolean verify(final String password,
+            final Map<String, Object> sourceMap) {
+        final Object hash = sourceMap.get(PASSWORD_KEY);
+        if (!(hash instanceof String)) {
+            return false;
+        }
+        return MessageDigest.isEqual(((String) hash).getBytes(UTF_8),
+                hash(password).getBytes(UTF_8));
+    }
+
+    private String hash(final String password) {
+        if (password == null) {
+            return "";
+        }
+        return DigestUtils.sha512Hex(password);
+    }
+}
@@ -1,52 +1,102 @@
 package org.codelibs.elasticsearch.auth.service;
 
+import java.io.File;
+import java.io.IOException;
 import java.util.ArrayList;
-import java.util.Collections;
-import java.util.Comparator;
+import java.util.BitSet;
 import java.util.Date;
 import java.util.HashMap;
 import java.util.LinkedHashMap;
+import java.util.LinkedList;
 import java.util.List;
+import java.util.Locale;
 import java.util.Map;
+import java.util.Queue;
 import java.util.Set;
-import java.util.TreeMap;
 import java.util.UUID;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.ConcurrentMap;
+import java.util.concurrent.ScheduledFuture;
+import java.util.concurrent.atomic.AtomicBoolean;
+import java.util.concurrent.atomic.AtomicInteger;
 
 import org.apache.commons.codec.digest.DigestUtils;
 import org.codelibs.elasticsearch.auth.AuthException;
+import org.codelibs.elasticsearch.auth.action.PublishConstraintsRequestBuilder;
+import org.codelibs.elasticsearch.auth.action.PublishConstraintsResponse;
 import org.codelibs.elasticsearch.auth.filter.ContentFilter;
 import org.codelibs.elasticsearch.auth.filter.LoginFilter;
+import org.codelibs.elasticsearch.auth.filter.LoginFilter.LoginMode;
 import org.codelibs.elasticsearch.auth.filter.LogoutFilter;
 import org.codelibs.elasticsearch.auth.security.Authenticator;
+import org.codelibs.elasticsearch.auth.security.AuthenticatorStats;
+import org.codelibs.elasticsearch.auth.security.CompiledConstraintTrie;
+import org.codelibs.elasticsearch.auth.security.ConstraintAutomaton;
+import org.codelibs.elasticsearch.auth.security.ConstraintLoader;
+import org.codelibs.elasticsearch.auth.security.ConstraintMatcher;
+import org.codelibs.elasticsearch.auth.security.ConstraintMetaData;
+import org.codelibs.elasticsearch.auth.security.ConstraintTrie;
 import org.codelibs.elasticsearch.auth.security.LoginConstraint;
+import org.codelibs.elasticsearch.auth.security.RoleRegistry;
+import org.codelibs.elasticsearch.auth.token.SignedTokenCodec;
+import org.codelibs.elasticsearch.auth.token.SignedTokenManager;
+import org.codelibs.elasticsearch.auth.token.TokenCache;
+import org.codelibs.elasticsearch.auth.token.TokenIndexResolver;
+import org.codelibs.elasticsearch.auth.token.TokenInfo;
+import org.codelibs.elasticsearch.auth.token.TokenLookup;
+import org.codelibs.elasticsearch.auth.token.TokenSweeper;
+import org.codelibs.elasticsearch.auth.token.TokenUpdater;
+import org.codelibs.elasticsearch.auth.transport.TokenEventRequest;
 import org.codelibs.elasticsearch.auth.util.MapUtil;
 import org.elasticsearch.ElasticsearchException;
 import org.elasticsearch.action.ActionListener;
 import org.elasticsearch.action.admin.cluster.health.ClusterHealthResponse;
 import org.elasticsearch.action.admin.cluster.health.ClusterHealthStatus;
+import org.elasticsearch.action.admin.indices.alias.Alias;
 import org.elasticsearch.action.admin.indices.create.CreateIndexResponse;
 import org.elasticsearch.action.admin.indices.exists.indices.IndicesExistsResponse;
 import org.elasticsearch.action.admin.indices.refresh.RefreshResponse;
+import org.elasticsearch.action.admin.indices.template.put.PutIndexTemplateResponse;
 import org.elasticsearch.action.delete.DeleteResponse;
 import org.elasticsearch.action.get.GetResponse;
+import org.elasticsearch.action.index.IndexRequestBuilder;
 import org.elasticsearch.action.index.IndexResponse;
-import org.elasticsearch.action.search.SearchResponse;
+import org.elasticsearch.action.update.UpdateRequestBuilder;
+import org.elasticsearch.action.update.UpdateResponse;
 import org.elasticsearch.client.Client;
+import org.elasticsearch.cluster.ClusterChangedEvent;
+import org.elasticsearch.cluster.ClusterService;
+import org.elasticsearch.cluster.ClusterStateListener;
+import org.elasticsearch.cluster.node.DiscoveryNode;
+import org.elasticsearch.cluster.node.DiscoveryNodes;
 import org.elasticsearch.common.component.AbstractLifecycleComponent;
 import org.elasticsearch.common.inject.Inject;
+import org.elasticsearch.common.io.Streams;
 import org.elasticsearch.common.netty.handler.codec.http.Cookie;
 import org.elasticsearch.common.netty.handler.codec.http.CookieDecoder;
 import org.elasticsearch.common.netty.handler.codec.http.HttpHeaders;
 import org.elasticsearch.common.settings.Settings;
-import org.elasticsearch.index.query.QueryBuilders;
+import org.elasticsearch.common.unit.TimeValue;
+import org.elasticsearch.common.xcontent.XContentHelper;
+import org.elasticsearch.env.Environment;
+import org.elasticsearch.gateway.GatewayService;
 import org.elasticsearch.rest.RestController;
 import org.elasticsearch.rest.RestRequest;
 import org.elasticsearch.rest.RestRequest.Method;
 import org.elasticsearch.rest.RestStatus;
-import org.elasticsearch.search.SearchHit;
-import org.elasticsearch.search.SearchHits;
+import org.elasticsearch.threadpool.ThreadPool;
+import org.elasticsearch.transport.BaseTransportRequestHandler;
+import org.elasticsearch.transport.EmptyTransportResponseHandler;
+import org.elasticsearch.transport.TransportChannel;
+import org.elasticsearch.transport.TransportException;
+import org.elasticsearch.transport.TransportResponse;
+import org.elasticsearch.transport.TransportService;
+import org.elasticsearch.watcher.FileChangesListener;
+import org.elasticsearch.watcher.FileWatcher;
+import org.elasticsearch.watcher.ResourceWatcherService;
 
-public class AuthService extends AbstractLifecycleComponent<AuthService> {
+public class AuthService extends AbstractLifecycleComponent<AuthService>
+        implements ClusterStateListener {
     private static final String DEFAULT_CONSTRAINT_TYPE = "constraint";
 
     private static final String DEFAULT_CONSTRAINT_INDEX_NAME = "security";
@@ -55,12 +105,20 @@ public class AuthService extends AbstractLifecycleComponent<AuthService> {
 
     private static final String DEFAULT_GUEST_ROLE = "guest";
 
+    private static final String TOKEN_EVENT_ACTION = "internal:auth/token/event";
+
     private RestController restController;
 
     private Map<String, Authenticator> authenticatorMap = new LinkedHashMap<String, Authenticator>();
 
     private Client client;
 
+    private ThreadPool threadPool;
+
+    private ClusterService clusterService;
+
+    private TransportService transportService;
+
     private String constraintIndex;
 
     private String constraintType;
@@ -71,8 +129,58 @@ public class AuthService extends AbstractLifecycleComponent<AuthService> {
 
     private String tokenKey = "token";
 
+    private TokenIndexResolver tokenIndexResolver;
+
+    private volatile boolean tokenTemplateCreated = false;
+
     private String guestRole;
 
+    private int guestRoleId;
+
+    private RoleRegistry roleRegistry = new RoleRegistry();
+
+    private int maxAutomatonStates;
+
+    private boolean compiledConstraints;
+
+    private ConstraintLoader constraintLoader;
+
+    private volatile LoginConstraint[] loginConstraints;
+
+    private volatile LoginConstraint[] loadedConstraints;
+
+    private volatile ConstraintTrie constraintTrie;
+
+    private final Queue<ReloadTask> reloadQueue = new LinkedList<ReloadTask>();
+
+    private boolean reloading = false;
+
+    private boolean clusterStateConstraints;
+
+    private File constraintFile;
+
+    private ResourceWatcherService resourceWatcherService;
+
+    private volatile long installedConstraintVersion = 0;
+
+    private ConstraintWatcher constraintWatcher;
+
+    private ScheduledFuture<?> constraintWatcherFuture;
+
+    private AtomicBoolean initializing = new AtomicBoolean(false);
+
+    private volatile boolean ready = false;
+
+    private volatile Throwable initFailure;
+
+    private AtomicInteger initAttempts = new AtomicInteger(0);
+
+    private TimeValue initRetryDelay;
+
+    private TimeValue initRetryMaxDelay;
+
+    private LoginFilter loginFilter;
+
     private ContentFilter contentFilter;
 
     private boolean cookieToken = true;
@@ -81,12 +189,42 @@ public class AuthService extends AbstractLifecycleComponent<AuthService> {
 
     private boolean updateToken;
 
+    private TimeValue tokenTtl;
+
+    private TokenCache tokenCache;
+
+    private ConcurrentMap<String, TokenLookup> tokenLookupMap = new ConcurrentHashMap<String, TokenLookup>();
+
+    private TokenUpdater tokenUpdater;
+
+    private TimeValue tokenFlushInterval;
+
+    private ScheduledFuture<?> tokenFlushFuture;
+
+    private SignedTokenManager signedTokenManager;
+
+    private ScheduledFuture<?> revocationFuture;
+
+    private boolean tokenEvent;
+
+    private TokenSweeper tokenSweeper;
+
+    private ScheduledFuture<?> tokenSweeperFuture;
+
     @Inject
     public AuthService(final Settings settings, final Client client,
-            final RestController restController) {
+            final RestController restController, final ThreadPool threadPool,
+            final ClusterService clusterService,
+            final TransportService transportService,
+            final Environment environment,
+            final ResourceWatcherService resourceWatcherService) {
         super(settings);
         this.client = client;
         this.restController = restController;
+        this.threadPool = threadPool;
+        this.clusterService = clusterService;
+        this.transportService = transportService;
+        this.resourceWatcherService = resourceWatcherService;
 
         logger.info("Creating authenticators.");
 
@@ -98,7 +236,58 @@ public class AuthService extends AbstractLifecycleComponent<AuthService> {
                 DEFAULT_COOKIE_TOKEN_NAME);
         updateToken = settings.getAsBoolean("auth.token.update_by_request",
                 true);
+        tokenTtl = settings.getAsTime("auth.token.ttl", null);
         guestRole = settings.get("auth.role.guest", DEFAULT_GUEST_ROLE);
+        guestRoleId = roleRegistry.getId(guestRole);
+        maxAutomatonStates = settings.getAsInt(
+                "auth.constraint.automaton.max_states", 10000);
+        compiledConstraints = settings.getAsBoolean("auth.constraint.compiled",
+                false);
+        constraintLoader = new ConstraintLoader(settings, client,
+                roleRegistry, constraintIndex, constraintType);
+        constraintWatcher = new ConstraintWatcher(settings, this, client,
+                clusterService, constraintIndex);
+        clusterStateConstraints = settings.getAsBoolean(
+                "auth.constraint.cluster_state", false);
+        final String constraintFilePath = settings.get("auth.constraint.file");
+        if (constraintFilePath != null) {
+            final File file = new File(constraintFilePath);
+            constraintFile = file.isAbsolute() ? file : new File(
+                    environment.configFile(), constraintFilePath);
+            // each node reads its own file
+            clusterStateConstraints = false;
+        }
+        initRetryDelay = settings.getAsTime("auth.init.retry.delay",
+                TimeValue.timeValueSeconds(1));
+        initRetryMaxDelay = settings.getAsTime("auth.init.retry.max_delay",
+                TimeValue.timeValueMinutes(1));
+        tokenCache = new TokenCache(settings);
+        tokenIndexResolver = new TokenIndexResolver(settings, authTokenIndex);
+        if (updateToken
+                && settings.getAsBoolean("auth.token.update.write_behind",
+                        false)) {
+            tokenUpdater = new TokenUpdater(client, tokenIndexResolver,
+                    tokenType,
+                    settings.getAsTime("auth.token.update.granularity",
+                            TimeValue.timeValueMinutes(1)), settings.getAsInt(
+                            "auth.token.update.bulk_size", 1000));
+            tokenUpdater.setTtl(tokenTtl);
+            tokenFlushInterval = settings.getAsTime(
+                    "auth.token.update.flush_interval",
+                    TimeValue.timeValueSeconds(10));
+        }
+        tokenEvent = settings.getAsBoolean("auth.token.event.enabled", true);
+        transportService.registerHandler(TOKEN_EVENT_ACTION,
+                new TokenEventRequestHandler());
+
+        if (settings.getAsBoolean("auth.token.signed", false)) {
+            signedTokenManager = new SignedTokenManager(settings, client,
+                    authTokenIndex);
+        }
+        tokenSweeper = new TokenSweeper(settings, client, threadPool,
+                clusterService, authTokenIndex, tokenIndexResolver, tokenType,
+                signedTokenManager != null ? signedTokenManager
+                        .getRevokedType() : null);
 
         if (cookieTokenName.trim().length() == 0
                 || "false".equalsIgnoreCase(cookieTokenName)) {
@@ -110,7 +299,7 @@ public class AuthService extends AbstractLifecycleComponent<AuthService> {
     protected void doStart() throws ElasticsearchException {
         logger.info("Starting AuthService.");
 
-        final LoginFilter loginFilter = new LoginFilter(this, authenticatorMap);
+        loginFilter = new LoginFilter(this, authenticatorMap, threadPool);
         final String loginPath = settings.get("auth.login.path");
         if (loginPath != null) {
             loginFilter.setLoginPath(loginPath);
@@ -120,6 +309,12 @@ public class AuthService extends AbstractLifecycleComponent<AuthService> {
         if (loginMethodValues != null && loginMethodValues.length > 0) {
             loginFilter.setHttpMethods(createMethods(loginMethodValues));
         }
+        loginFilter.setLoginMode(LoginMode.valueOf(settings.get(
+                "auth.login.mode", "all").toUpperCase(Locale.ROOT)));
+        loginFilter.setAuthenticatorOrder(settings.getAsArray(
+                "auth.login.authenticators", new String[0]));
+        loginFilter.setAuthenticatorTimeout(settings.getAsTime(
+                "auth.login.timeout", TimeValue.timeValueMillis(-1)));
         restController.registerFilter(loginFilter);
 
         final LogoutFilter logoutFilter = new LogoutFilter(this);
@@ -134,13 +329,130 @@ public class AuthService extends AbstractLifecycleComponent<AuthService> {
         }
         restController.registerFilter(logoutFilter);
 
-        contentFilter = new ContentFilter(this);
+        contentFilter = new ContentFilter(this, threadPool);
+        contentFilter.setMaxPendingRequests(settings.getAsInt(
+                "auth.pending.max_requests", 1000));
+        contentFilter.setPendingTimeout(settings.getAsTime(
+                "auth.pending.timeout", TimeValue.timeValueSeconds(30)));
         restController.registerFilter(contentFilter);
+
+        if (constraintFile != null) {
+            reloadConstraintFile();
+            final FileWatcher fileWatcher = new FileWatcher(constraintFile);
+            fileWatcher.addListener(new FileChangesListener() {
+                @Override
+                public void onFileCreated(final File file) {
+                    reloadConstraintFile();
+                }
+
+                @Override
+                public void onFileChanged(final File file) {
+                    reloadConstraintFile();
+                }
+            });
+            resourceWatcherService.add(fileWatcher);
+        }
+
+        if (tokenUpdater != null) {
+            tokenFlushFuture = threadPool.scheduleWithFixedDelay(
+                    new Runnable() {
+                        @Override
+                        public void run() {
+                            // bulk requests are built off the scheduler thread
+                            threadPool.generic().execute(new Runnable() {
+                                @Override
+                                public void run() {
+                                    tokenUpdater.flush();
+                                }
+                            });
+                        }
+                    }, tokenFlushInterval);
+        }
+
+        if (signedTokenManager != null) {
+            revocationFuture = threadPool.scheduleWithFixedDelay(
+                    new Runnable() {
+                        @Override
+                        public void run() {
+                            threadPool.generic().execute(new Runnable() {
+                                @Override
+                                public void run() {
+                                    signedTokenManager.refreshRevocations();
+                                }
+                            });
+                        }
+                    }, settings.getAsTime(
+                            "auth.token.signed.revocation.refresh_interval",
+                            TimeValue.timeValueSeconds(10)));
+        }
+
+        if (tokenSweeper.isEnabled()) {
+            tokenSweeperFuture = threadPool.scheduleWithFixedDelay(
+                    new Runnable() {
+                        @Override
+                        public void run() {
+                            threadPool.generic().execute(tokenSweeper);
+                        }
+                    }, settings.getAsTime(
+                            "auth.token.sweeper.interval",
+                            TimeValue.timeValueHours(1)));
+        }
+
+        if (constraintFile == null && constraintWatcher.isEnabled()) {
+            constraintWatcherFuture = threadPool.scheduleWithFixedDelay(
+                    constraintWatcher, constraintWatcher.getInterval());
+        }
+
+        clusterService.add(this);
+    }
+
+    private void reloadConstraintFile() {
+        reload(new ActionListener<Void>() {
+            @Override
+            public void onResponse(final Void response) {
+                logger.info("Loaded {} constraint(s) from {}.",
+                        getConstraintCount(), constraintFile.getAbsolutePath());
+                // no cluster health and index reads are needed
+                if (!ready) {
+                    initFailure = null;
+                    ready = true;
+                    logger.info("AuthService is ready with {} constraint(s).",
+                            getConstraintCount());
+                }
+            }
+
+            @Override
+            public void onFailure(final Throwable e) {
+                if (!ready) {
+                    initFailure = e;
+                }
+                logger.warn("Failed to load constraints from {}.", e,
+                        constraintFile.getAbsolutePath());
+            }
+        });
     }
 
     @Override
     protected void doStop() throws ElasticsearchException {
         logger.info("Stopping AuthService");
+
+        clusterService.remove(this);
+
+        if (tokenFlushFuture != null) {
+            tokenFlushFuture.cancel(false);
+        }
+        if (revocationFuture != null) {
+            revocationFuture.cancel(false);
+        }
+        if (tokenSweeperFuture != null) {
+            tokenSweeperFuture.cancel(false);
+        }
+        if (constraintWatcherFuture != null) {
+            constraintWatcherFuture.cancel(false);
+        }
+        if (tokenUpdater != null) {
+            tokenUpdater.flush(TimeValue.timeValueSeconds(30));
+        }
     }
 
     @Override
@@ -153,6 +465,102 @@ public class AuthService extends AbstractLifecycleComponent<AuthService> {
         authenticatorMap.put(name, authenticator);
     }
 
+    @Override
+    public void clusterChanged(final ClusterChangedEvent event) {
+        if (clusterStateConstraints) {
+            final ConstraintMetaData metaData = event.state().metaData()
+                    .custom(ConstraintMetaData.TYPE);
+            if (metaData != null
+                    && metaData.getVersion() > installedConstraintVersion) {
+                threadPool.generic().execute(new Runnable() {
+                    @Override
+                    public void run() {
+                        installConstraints(metaData);
+                    }
+                });
+            } else if (metaData == null && ready && event.localNodeMaster()
+                    && !event.previousState().nodes().localNodeMaster()) {
+                // a new master publishes constraints if nobody did
+                reload(new ActionListener<Void>() {
+                    @Override
+                    public void onResponse(final Void response) {
+                        // nothing
+                    }
+
+                    @Override
+                    public void onFailure(final Throwable e) {
+                        logger.warn("Failed to publish constraints.", e);
+                    }
+                });
+            }
+        }
+
+        if (ready
+                || constraintFile != null
+                || event.state().blocks()
+                        .hasGlobalBlock(GatewayService.STATE_NOT_RECOVERED_BLOCK)) {
+            return;
+        }
+        if (initializing.compareAndSet(false, true)) {
+            threadPool.generic().execute(new Runnable() {
+                @Override
+                public void run() {
+                    initWithRetry(initRetryDelay.millis());
+                }
+            });
+        }
+    }
+
+    private void initWithRetry(final long delay) {
+        if (!lifecycle.started()) {
+            initializing.set(false);
+            return;
+        }
+        initAttempts.incrementAndGet();
+        init(new ActionListener<Void>() {
+            @Override
+            public void onResponse(final Void response) {
+                initFailure = null;
+                ready = true;
+                initializing.set(false);
+                logger.info("AuthService is ready with {} constraint(s).",
+                        getConstraintCount());
+            }
+
+            @Override
+            public void onFailure(final Throwable e) {
+                initFailure = e;
+                logger.warn("Failed to initialize AuthService. Retry in {}.",
+                        e, TimeValue.timeValueMillis(delay));
+                final long nextDelay = Math.min(delay * 2,
+                        initRetryMaxDelay.millis());
+                threadPool.schedule(TimeValue.timeValueMillis(delay),
+                        ThreadPool.Names.GENERIC, new Runnable() {
+                            @Override
+                            public void run() {
+                                initWithRetry(nextDelay);
+                            }
+                        });
+            }
+        });
+    }
+
+    public boolean isReady() {
+        return ready && loginConstraints != null;
+    }
+
+    public int getPendingRequestCount() {
+        return contentFilter != null ? contentFilter.getPendingCount() : 0;
+    }
+
+    public Throwable getInitFailure() {
+        return initFailure;
+    }
+
+    public int getInitAttempts() {
+        return initAttempts.get();
+    }
+
     public void init(final ActionListener<Void> listener) {
         client.admin().cluster().prepareHealth().setWaitForYellowStatus()
                 .execute(new ActionListener<ClusterHealthResponse>() {
@@ -162,6 +570,21 @@ public class AuthService extends AbstractLifecycleComponent<AuthService> {
                             listener.onFailure(new AuthException(
                                     RestStatus.SERVICE_UNAVAILABLE,
                                     "This cluster is not ready."));
+                        } else if (signedTokenManager != null) {
+                            signedTokenManager
+                                    .loadKey(new ActionListener<Void>() {
+                                        @Override
+                                        public void onResponse(
+                                                final Void response) {
+                                            createConstraintIndexIfNotExist(listener);
+                                        }
+
+                                        @Override
+                                        public void onFailure(
+                                                final Throwable e) {
+                                            listener.onFailure(e);
+                                        }
+                                    });
                         } else {
                             createConstraintIndexIfNotExist(listener);
                         }
@@ -195,7 +618,12 @@ public class AuthService extends AbstractLifecycleComponent<AuthService> {
     }
 
     protected void createConstraintIndex(final ActionListener<Void> listener) {
+        // _timestamp lets a delta reload search only changed documents
         client.admin().indices().prepareCreate(constraintIndex)
+                .addMapping(
+                        constraintType,
+                        "{\"" + constraintType
+                                + "\":{\"_timestamp\":{\"enabled\":true}}}")
                 .execute(new ActionListener<CreateIndexResponse>() {
                     @Override
                     public void onResponse(final CreateIndexResponse response) {
@@ -211,27 +639,124 @@ public class AuthService extends AbstractLifecycleComponent<AuthService> {
     }
 
     public void reload(final ActionListener<Void> listener) {
+        reload(false, listener);
+    }
+
+    public void reload(final boolean delta, final ActionListener<Void> listener) {
+        // full and delta reloads share the loader state, so run one at a time
+        synchronized (reloadQueue) {
+            reloadQueue.add(new ReloadTask(delta, listener));
+            if (reloading) {
+                return;
+            }
+            reloading = true;
+        }
+        runNextReload();
+    }
+
+    private void runNextReload() {
+        final ReloadTask task;
+        synchronized (reloadQueue) {
+            task = reloadQueue.poll();
+            if (task == null) {
+                reloading = false;
+                return;
+            }
+        }
+        final ActionListener<Void> listener = new ActionListener<Void>() {
+            @Override
+            public void onResponse(final Void response) {
+                try {
+                    task.listener.onResponse(response);
+                } finally {
+                    runNextReload();
+                }
+            }
+
+            @Override
+            public void onFailure(final Throwable e) {
+                try {
+                    task.listener.onFailure(e);
+                } finally {
+                    runNextReload();
+                }
+            }
+        };
+        try {
+            doReload(task.delta, listener);
+        } catch (final Exception e) {
+            listener.onFailure(e);
+        }
+    }
+
+    private void doReload(final boolean delta,
+            final ActionListener<Void> listener) {
+        if (clusterStateConstraints
+                && !clusterService.state().nodes().localNodeMaster()) {
+            // constraints are published by the master node
+            listener.onResponse(null);
+            return;
+        }
+        final ActionListener<LoginConstraint[]> loadListener = new ActionListener<LoginConstraint[]>() {
+            @Override
+            public void onResponse(final LoginConstraint[] constraints) {
+                if (constraints == loadedConstraints) {
+                    if (logger.isDebugEnabled()) {
+                        logger.debug("No constraint changes.");
+                    }
+                    constraintLoader.commit();
+                    listener.onResponse(null);
+                    return;
+                }
+                if (logger.isDebugEnabled()) {
+                    logger.debug("Load {} constraint(s).", constraints.length);
+                }
+                final ConstraintTrie trie;
+                final ConstraintMatcher constraintMatcher;
+                try {
+                    trie = clusterStateConstraints ? null : createConstraintTrie(
+                            delta, constraints);
+                    if (trie == null) {
+                        constraintMatcher = createConstraintMatcher(constraints);
+                    } else if (compiledConstraints) {
+                        constraintMatcher = new CompiledConstraintTrie(trie);
+                    } else {
+                        constraintMatcher = trie;
+                    }
+                } catch (final Exception e) {
+                    // the loaded state is not committed, so the next delta
+                    // reload starts from the installed constraints again
+                    listener.onFailure(new AuthException(
+                            RestStatus.INTERNAL_SERVER_ERROR,
+                            "Could not compile constraints.", e));
+                    return;
+                }
+                if (clusterStateConstraints) {
+                    publishConstraints(constraints, listener);
+                    return;
+                }
+                contentFilter.setConstraintMatcher(constraintMatcher);
+                constraintTrie = trie;
+                loginConstraints = constraints;
+                loadedConstraints = constraints;
+                constraintLoader.commit();
+                listener.onResponse(null);
+            }
+
+            @Override
+            public void onFailure(final Throwable e) {
+                listener.onFailure(e);
+            }
+        };
+        if (constraintFile != null) {
+            loadLoginConstraints(delta, loadListener);
+            return;
+        }
         client.admin().indices().prepareRefresh(constraintIndex).setForce(true)
                 .execute(new ActionListener<RefreshResponse>() {
                     @Override
                     public void onResponse(final RefreshResponse response) {
-                        loadLoginConstraints(new ActionListener<LoginConstraint[]>() {
-                            @Override
-                            public void onResponse(
-                                    final LoginConstraint[] constraints) {
-                                if (logger.isDebugEnabled()) {
-                                    logger.debug("Load {} constraint(s).",
-                                            constraints.length);
-                                }
-                                contentFilter.setLoginConstraints(constraints);
-                                listener.onResponse(null);
-                            }
-
-                            @Override
-                            public void onFailure(final Throwable e) {
-                                listener.onFailure(e);
-                            }
-                        });
+                        loadLoginConstraints(delta, loadListener);
                     }
 
                     @Override
@@ -241,6 +766,91 @@ public class AuthService extends AbstractLifecycleComponent<AuthService> {
                 });
     }
 
+    private void publishConstraints(final LoginConstraint[] constraints,
+            final ActionListener<Void> listener) {
+        new PublishConstraintsRequestBuilder(client.admin().cluster())
+                .setConstraints(ConstraintMetaData.create(0, constraints))
+                .execute(new ActionListener<PublishConstraintsResponse>() {
+                    @Override
+                    public void onResponse(
+                            final PublishConstraintsResponse response) {
+                        if (logger.isDebugEnabled()) {
+                            logger.debug(
+                                    "Published {} constraint(s) as version {}.",
+                                    constraints.length, response.getVersion());
+                        }
+                        loadedConstraints = constraints;
+                        constraintLoader.commit();
+                        listener.onResponse(null);
+                    }
+
+                    @Override
+                    public void onFailure(final Throwable e) {
+                        listener.onFailure(new AuthException(
+                                RestStatus.INTERNAL_SERVER_ERROR,
+                                "Could not publish constraints.", e));
+                    }
+                });
+    }
+
+    private synchronized void installConstraints(
+            final ConstraintMetaData metaData) {
+        if (metaData.getVersion() <= installedConstraintVersion) {
+            return;
+        }
+        final LoginConstraint[] constraints = metaData
+                .toConstraints(roleRegistry);
+        final ConstraintMatcher constraintMatcher;
+        try {
+            constraintMatcher = createConstraintMatcher(constraints);
+        } catch (final Exception e) {
+            logger.error("Could not compile constraints of version {}.", e,
+                    metaData.getVersion());
+            return;
+        }
+        contentFilter.setConstraintMatcher(constraintMatcher);
+        loginConstraints = constraints;
+        installedConstraintVersion = metaData.getVersion();
+        if (logger.isDebugEnabled()) {
+            logger.debug("Installed {} constraint(s) of version {}.",
+                    constraints.length, metaData.getVersion());
+        }
+    }
+
+    private ConstraintTrie createConstraintTrie(final boolean delta,
+            final LoginConstraint[] constraints) {
+        final ConstraintTrie trie = constraintTrie;
+        final Map<String, LoginConstraint> changes = constraintLoader
+                .getChanges();
+        if (delta && constraintFile == null && trie != null && changes != null) {
+            for (final String path : changes.keySet()) {
+                if (ConstraintAutomaton.isPattern(path)) {
+                    return null;
+                }
+            }
+            return trie.update(changes, constraints.length);
+        }
+        for (final LoginConstraint constraint : constraints) {
+            if (ConstraintAutomaton.isPattern(constraint.getPath())) {
+                return null;
+            }
+        }
+        return new ConstraintTrie(constraints);
+    }
+
+    protected ConstraintMatcher createConstraintMatcher(
+            final LoginConstraint[] constraints) {
+        for (final LoginConstraint constraint : constraints) {
+            if (ConstraintAutomaton.isPattern(constraint.getPath())) {
+                return new ConstraintAutomaton(constraints, maxAutomatonStates);
+            }
+        }
+        if (compiledConstraints) {
+            return new CompiledConstraintTrie(constraints);
+        }
+        return new ConstraintTrie(constraints);
+    }
+
     public void createToken(final Set<String> roleSet,
             final ActionListener<String> listener) {
         if (roleSet == null || roleSet.isEmpty()) {
@@ -249,17 +859,71 @@ public class AuthService extends AbstractLifecycleComponent<AuthService> {
             return;
         }
 
-        final String token = generateToken();
+        if (signedTokenManager != null) {
+            createSignedToken(roleSet, listener);
+            return;
+        }
+
+        if (tokenIndexResolver.isRolling() && !tokenTemplateCreated) {
+            createTokenTemplate(new ActionListener<Void>() {
+                @Override
+                public void onResponse(final Void response) {
+                    createToken(roleSet, listener);
+                }
+
+                @Override
+                public void onFailure(final Throwable e) {
+                    listener.onFailure(e);
+                }
+            });
+            return;
+        }
+
+        final Date lastModified = new Date();
+        final String token = tokenIndexResolver.createToken(generateToken(),
+                lastModified.getTime());
 
         final Map<String, Object> sourceMap = new HashMap<String, Object>();
         sourceMap.put("roles", roleSet);
-        sourceMap.put("lastModified", new Date());
-        client.prepareIndex(authTokenIndex, tokenType, token)
-                .setSource(sourceMap).setRefresh(true)
-                .execute(new ActionListener<IndexResponse>() {
+        sourceMap.put("created", lastModified);
+        sourceMap.put("lastModified", lastModified);
+        final IndexRequestBuilder builder = client.prepareIndex(
+                tokenIndexResolver.getIndex(token), tokenType, token)
+                .setSource(sourceMap).setRefresh(true);
+        if (tokenTtl != null) {
+            builder.setTTL(tokenTtl.millis());
+        }
+        builder.execute(new ActionListener<IndexResponse>() {
+            @Override
+            public void onResponse(final IndexResponse response) {
+                final String[] roles = roleSet
+                        .toArray(new String[roleSet.size()]);
+                tokenCache.put(token, new TokenInfo(roles, lastModified
+                        .getTime(), lastModified.getTime()));
+                publishTokenEvent(new TokenEventRequest(
+                        TokenEventRequest.CREATE, token, roles,
+                        lastModified.getTime()));
+                listener.onResponse(token);
+            }
+
+            @Override
+            public void onFailure(final Throwable e) {
+                listener.onFailure(e);
+            }
+        });
+    }
+
+    private void createTokenTemplate(final ActionListener<Void> listener) {
+        final String alias = tokenIndexResolver.getAlias();
+        client.admin().indices().preparePutTemplate(alias)
+                .setTemplate(tokenIndexResolver.getTemplatePattern())
+                .addAlias(new Alias(alias))
+                .execute(new ActionListener<PutIndexTemplateResponse>() {
                     @Override
-                    public void onResponse(final IndexResponse response) {
-                        listener.onResponse(token);
+                    public void onResponse(
+                            final PutIndexTemplateResponse response) {
+                        tokenTemplateCreated = true;
+                        listener.onResponse(null);
                     }
 
                     @Override
@@ -269,67 +933,204 @@ public class AuthService extends AbstractLifecycleComponent<AuthService> {
                 });
     }
 
-    public void authenticate(final String token, final String[] roles,
+    private void createSignedToken(final Set<String> roleSet,
+            final ActionListener<String> listener) {
+        if (signedTokenManager.isReady()) {
+            listener.onResponse(signedTokenManager.createToken(roleSet));
+            return;
+        }
+        signedTokenManager.loadKey(new ActionListener<Void>() {
+            @Override
+            public void onResponse(final Void response) {
+                listener.onResponse(signedTokenManager.createToken(roleSet));
+            }
+
+            @Override
+            public void onFailure(final Throwable e) {
+                listener.onFailure(e);
+            }
+        });
+    }
+
+    public void authenticate(final String token, final BitSet roles,
             final ActionListener<Boolean> listener) {
         if (token == null) {
-            if (roles != null) {
-                for (final String role : roles) {
-                    if (guestRole.equals(role)) {
-                        listener.onResponse(true);
-                        return;
+            listener.onResponse(roles != null && roles.get(guestRoleId));
+        } else if (signedTokenManager != null
+                && SignedTokenCodec.isSignedToken(token)) {
+            authenticateSignedToken(token, roles, listener);
+        } else {
+            final TokenInfo tokenInfo = tokenCache.get(token);
+            if (tokenInfo != null) {
+                if (!isExpired(tokenInfo)) {
+                    authorize(token, tokenInfo, roles, listener);
+                    return;
+                }
+                // lastModified may be updated by other nodes
+                tokenCache.invalidate(token);
+            }
+            if (tokenCache.isInvalid(token)) {
+                listener.onResponse(false);
+                return;
+            }
+            lookupToken(token, new ActionListener<TokenInfo>() {
+                @Override
+                public void onResponse(final TokenInfo tokenInfo) {
+                    if (tokenInfo != null) {
+                        authorize(token, tokenInfo, roles, listener);
+                    } else {
+                        listener.onResponse(false);
                     }
                 }
+
+                @Override
+                public void onFailure(final Throwable e) {
+                    listener.onFailure(e);
+                }
+            });
+        }
+    }
+
+    private void authenticateSignedToken(final String token,
+            final BitSet roles, final ActionListener<Boolean> listener) {
+        if (signedTokenManager.isReady()) {
+            listener.onResponse(hasSignedRole(roles, token));
+            return;
+        }
+        signedTokenManager.loadKey(new ActionListener<Void>() {
+            @Override
+            public void onResponse(final Void response) {
+                listener.onResponse(hasSignedRole(roles, token));
             }
-            listener.onResponse(false);
-        } else {
-            client.prepareGet(authTokenIndex, tokenType, token).execute(
+
+            @Override
+            public void onFailure(final Throwable e) {
+                listener.onFailure(e);
+            }
+        });
+    }
+
+    private boolean hasSignedRole(final BitSet roles, final String token) {
+        final String[] tokenRoles = signedTokenManager.getRoles(token);
+        if (tokenRoles == null) {
+            return false;
+        }
+        for (final String tokenRole : tokenRoles) {
+            final int id = roleRegistry.findId(tokenRole);
+            if (id >= 0 && roles.get(id)) {
+                return true;
+            }
+        }
+        return false;
+    }
+
+    private void lookupToken(final String token,
+            final ActionListener<TokenInfo> listener) {
+        final TokenLookup lookup = new TokenLookup();
+        final TokenLookup current = tokenLookupMap.putIfAbsent(token, lookup);
+        if (current != null) {
+            current.addListener(listener);
+            return;
+        }
+        lookup.addListener(listener);
+        final String index = tokenIndexResolver.getIndex(token);
+        if (index == null) {
+            tokenCache.putInvalid(token);
+            tokenLookupMap.remove(token, lookup);
+            lookup.onResponse(null);
+            return;
+        }
+        try {
+            client.prepareGet(index, tokenType, token).execute(
                     new ActionListener<GetResponse>() {
                         @Override
                         public void onResponse(final GetResponse response) {
                             final Map<String, Object> sourceMap = response
                                     .getSource();
+                            TokenInfo tokenInfo = null;
                             if (sourceMap != null) {
-                                final String[] tokenRoles = MapUtil.getAsArray(
+                                final Date lastModified = MapUtil.getAsDate(
+                                        sourceMap, "lastModified", null);
+                                final long lastModifiedTime = lastModified != null ? lastModified
+                                        .getTime() : 0L;
+                                final Date created = MapUtil.getAsDate(
+                                        sourceMap, "created", null);
+                                final String[] roles = MapUtil.getAsArray(
                                         sourceMap, "roles", new String[0]);
-                                for (final String role : roles) {
-                                    for (final String tokenRole : tokenRoles) {
-                                        if (role.equals(tokenRole)) {
-                                            listener.onResponse(true);
-                                            if (updateToken) {
-                                                updateToken(token, sourceMap);
-                                            }
-                                            return;
-                                        }
-                                    }
+                                tokenInfo = new TokenInfo(roles,
+                                        created != null ? created.getTime()
+                                                : lastModifiedTime,
+                                        lastModifiedTime);
+                                if (isExpired(tokenInfo)) {
+                                    tokenInfo = null;
                                 }
                             }
-                            listener.onResponse(false);
+                            if (tokenInfo != null) {
+                                tokenCache.put(token, tokenInfo);
+                            } else {
+                                tokenCache.putInvalid(token);
+                            }
+                            tokenLookupMap.remove(token, lookup);
+                            lookup.onResponse(tokenInfo);
                         }
 
                         @Override
                         public void onFailure(final Throwable e) {
-                            listener.onFailure(e);
+                            tokenLookupMap.remove(token, lookup);
+                            lookup.onFailure(e);
                         }
                     });
+        } catch (final Exception e) {
+            tokenLookupMap.remove(token, lookup);
+            lookup.onFailure(e);
         }
     }
 
-    private void updateToken(final String token,
-            final Map<String, Object> sourceMap) {
+    private boolean isExpired(final TokenInfo tokenInfo) {
+        return tokenInfo.isExpired(System.currentTimeMillis(),
+                tokenSweeper.getLifetime(), tokenSweeper.getIdleTimeout());
+    }
+
+    private void authorize(final String token, final TokenInfo tokenInfo,
+            final BitSet roles, final ActionListener<Boolean> listener) {
+        if (roles.intersects(tokenInfo.getRoleBits(roleRegistry))) {
+            listener.onResponse(true);
+            if (tokenUpdater != null) {
+                tokenUpdater.record(token, tokenInfo);
+            } else if (updateToken) {
+                tokenInfo.setLastModified(System.currentTimeMillis());
+                updateToken(token);
+            }
+            return;
+        }
+        listener.onResponse(false);
+    }
+
+    private void updateToken(final String token) {
+        final String index = tokenIndexResolver.getIndex(token);
+        if (index == null) {
+            // the bucket of the token is expired
+            return;
+        }
+        final Map<String, Object> sourceMap = new HashMap<String, Object>();
         sourceMap.put("lastModified", new Date());
-        client.prepareIndex(authTokenIndex, tokenType, token)
-                .setSource(sourceMap)
-                .execute(new ActionListener<IndexResponse>() {
-                    @Override
-                    public void onResponse(final IndexResponse response) {
-                        // nothing
-                    }
+        final UpdateRequestBuilder builder = client.prepareUpdate(index,
+                tokenType, token).setDoc(sourceMap);
+        if (tokenTtl != null) {
+            // a partial update keeps the remaining ttl
+            builder.setTtl(tokenTtl.millis());
+        }
+        builder.execute(new ActionListener<UpdateResponse>() {
+            @Override
+            public void onResponse(final UpdateResponse response) {
+                // nothing
+            }
 
-                    @Override
-                    public void onFailure(final Throwable e) {
-                        logger.warn("Failed to update token: " + token, e);
-                    }
-                });
+            @Override
+            public void onFailure(final Throwable e) {
+                logger.warn("Failed to update token: " + token, e);
+            }
+        });
     }
 
     public void createUser(final String authenticatorName,
@@ -370,11 +1171,42 @@ public class AuthService extends AbstractLifecycleComponent<AuthService> {
 
     public void deleteToken(final String token,
             final ActionListener<Void> listener) {
-        client.prepareDelete(authTokenIndex, tokenType, token).setRefresh(true)
+        if (signedTokenManager != null
+                && SignedTokenCodec.isSignedToken(token)) {
+            signedTokenManager.revoke(token, new ActionListener<Void>() {
+                @Override
+                public void onResponse(final Void response) {
+                    publishTokenEvent(new TokenEventRequest(
+                            TokenEventRequest.REVOKE, token, new String[0], 0L));
+                    listener.onResponse(null);
+                }
+
+                @Override
+                public void onFailure(final Throwable e) {
+                    listener.onFailure(e);
+                }
+            });
+            return;
+        }
+        tokenCache.invalidate(token);
+        if (tokenUpdater != null) {
+            tokenUpdater.remove(token);
+        }
+        final String index = tokenIndexResolver.getIndex(token);
+        if (index == null) {
+            listener.onFailure(new AuthException(RestStatus.BAD_REQUEST,
+                    "The token does not exist."));
+            return;
+        }
+        client.prepareDelete(index, tokenType, token).setRefresh(true)
                 .execute(new ActionListener<DeleteResponse>() {
                     @Override
                     public void onResponse(final DeleteResponse response) {
                         if (response.isFound()) {
+                            tokenCache.invalidate(token);
+                            publishTokenEvent(new TokenEventRequest(
+                                    TokenEventRequest.REVOKE, token,
+                                    new String[0], 0L));
                             listener.onResponse(null);
                         } else {
                             listener.onFailure(new AuthException(
@@ -390,6 +1222,50 @@ public class AuthService extends AbstractLifecycleComponent<AuthService> {
                 });
     }
 
+    private void publishTokenEvent(final TokenEventRequest request) {
+        if (!tokenEvent) {
+            return;
+        }
+        final DiscoveryNodes nodes = clusterService.state().nodes();
+        for (final DiscoveryNode node : nodes) {
+            if (node.id().equals(nodes.localNodeId())) {
+                continue;
+            }
+            transportService.sendRequest(node, TOKEN_EVENT_ACTION, request,
+                    new EmptyTransportResponseHandler(ThreadPool.Names.SAME) {
+                        @Override
+                        public void handleException(final TransportException exp) {
+                            logger.warn("Failed to send a token event to {}",
+                                    exp, node);
+                        }
+                    });
+        }
+    }
+
+    private void applyTokenEvent(final TokenEventRequest request) {
+        final String token = request.getToken();
+        switch (request.getType()) {
+        case TokenEventRequest.CREATE:
+            tokenCache.put(token, new TokenInfo(request.getRoles(), request
+                    .getLastModified(), request.getLastModified()));
+            break;
+        case TokenEventRequest.REVOKE:
+            if (signedTokenManager != null
+                    && SignedTokenCodec.isSignedToken(token)) {
+                signedTokenManager.addRevocation(token);
+            } else {
+                tokenCache.invalidate(token);
+                if (tokenUpdater != null) {
+                    tokenUpdater.remove(token);
+                }
+            }
+            break;
+        default:
+            logger.warn("Unknown token event: {}", request.getType());
+            break;
+        }
+    }
+
     public String getToken(final RestRequest request) {
         String token = request.param(tokenKey);
         //   cookie
@@ -410,6 +1286,27 @@ public class AuthService extends AbstractLifecycleComponent<AuthService> {
         return token;
     }
 
+    public boolean isRejectedToken(final String token) {
+        return token != null && tokenCache.isRejected(token);
+    }
+
+    public boolean isClusterStateConstraints() {
+        return clusterStateConstraints;
+    }
+
+    public int getConstraintCount() {
+        final LoginConstraint[] constraints = loginConstraints;
+        return constraints != null ? constraints.length : 0;
+    }
+
+    public AuthenticatorStats getAuthenticatorStats() {
+        return loginFilter.getAuthenticatorStats();
+    }
+
+    public TokenCache getTokenCache() {
+        return tokenCache;
+    }
+
     private String generateToken() {
         return DigestUtils.sha512Hex(UUID.randomUUID().toString());
     }
@@ -424,78 +1321,55 @@ public class AuthService extends AbstractLifecycleComponent<AuthService> {
         return authenticator;
     }
 
-    protected void loadLoginConstraints(
+    protected void loadLoginConstraints(final boolean delta,
             final ActionListener<LoginConstraint[]> listener) {
-        client.prepareSearch(constraintIndex).setTypes(constraintType)
-                .setQuery(QueryBuilders.queryString("*:*"))
-                .execute(new ActionListener<SearchResponse>() {
-                    @Override
-                    public void onResponse(final SearchResponse response) {
-                        final Map<String, LoginConstraint> constraintMap = new TreeMap<String, LoginConstraint>(
-                                new Comparator<String>() {
-                                    @Override
-                                    public int compare(final String path1,
-                                            final String path2) {
-                                        final int length1 = path1.length();
-                                        final int length2 = path2.length();
-                                        if (length1 == length2) {
-                                            return -1 * path1.compareTo(path2);
-                                        }
-                                        return length1 < length2 ? -1 : 1;
-                                    }
-                                });
-                        final SearchHits hits = response.getHits();
-                        if (hits.totalHits() != 0) {
-                            for (final SearchHit hit : hits) {
-                                final Map<String, Object> sourceMap = hit
-                                        .sourceAsMap();
-                                final List<String> methodList = MapUtil
-                                        .getAsList(sourceMap, "methods",
-                                                Collections
-                                                        .<String> emptyList());
-                                final List<String> pathList = MapUtil
-                                        .getAsList(sourceMap, "paths",
-                                                Collections
-                                                        .<String> emptyList());
-                                final List<String> roleList = MapUtil
-                                        .getAsList(sourceMap, "roles",
-                                                Collections
-                                                        .<String> emptyList());
-                                if (!pathList.isEmpty() && !roleList.isEmpty()) {
-                                    for (final String path : pathList) {
-                                        LoginConstraint constraint = constraintMap
-                                                .get(path);
-                                        if (constraint == null) {
-                                            constraint = new LoginConstraint();
-                                            constraint.setPath(path);
-                                            constraintMap.put(path, constraint);
-                                        }
-                                        constraint.addCondition(methodList
-                                                .toArray(new String[methodList
-                                                        .size()]), roleList
-                                                .toArray(new String[roleList
-                                                        .size()]));
-                                    }
-                                } else {
-                                    logger.warn("Invaid login settings: "
-                                            + sourceMap);
-                                }
-                            }
-                        }
-
-                        listener.onResponse(constraintMap.values().toArray(
-                                new LoginConstraint[constraintMap.size()]));
-                    }
+        final ActionListener<LoginConstraint[]> loadListener = new ActionListener<LoginConstraint[]>() {
+            @Override
+            public void onResponse(final LoginConstraint[] constraints) {
+                listener.onResponse(constraints);
+            }
 
-                    @Override
-                    public void onFailure(final Throwable e) {
-                        listener.onFailure(new AuthException(
-                                RestStatus.INTERNAL_SERVER_ERROR,
-                                constraintIndex + ":" + constraintType
-                                        + " is not found.", e));
-                    }
-                });
+            @Override
+            public void onFailure(final Throwable e) {
+                listener.onFailure(new AuthException(
+                        RestStatus.INTERNAL_SERVER_ERROR, constraintIndex + ":"
+                                + constraintType + " is not found.", e));
+            }
+        };
+        if (constraintFile != null) {
+            final LoginConstraint[] constraints;
+            try {
+                constraints = loadConstraintFile();
+            } catch (final Exception e) {
+                listener.onFailure(new AuthException(
+                        RestStatus.INTERNAL_SERVER_ERROR, "Could not load "
+                                + constraintFile.getAbsolutePath(), e));
+                return;
+            }
+            listener.onResponse(constraints);
+        } else if (delta) {
+            constraintLoader.loadDelta(loadListener);
+        } else {
+            constraintLoader.load(loadListener);
+        }
+    }
 
+    @SuppressWarnings("unchecked")
+    private LoginConstraint[] loadConstraintFile() throws IOException {
+        final Map<String, Object> sourceMap = XContentHelper.convertToMap(
+                Streams.copyToByteArray(constraintFile), true).v2();
+        final List<Map<String, Object>> sourceList = new ArrayList<Map<String, Object>>();
+        final Object constraintsObj = sourceMap.get("constraints");
+        if (constraintsObj instanceof List) {
+            for (final Object obj : (List<Object>) constraintsObj) {
+                if (obj instanceof Map) {
+                    sourceList.add((Map<String, Object>) obj);
+                } else {
+                    logger.warn("Invaid login settings: " + obj);
+                }
+            }
+        }
+        return constraintLoader.build(sourceList);
     }
 
     private Method[] createMethods(final String[] methodValues) {
@@ -518,4 +1392,36 @@ public class AuthService extends AbstractLifecycleComponent<AuthService> {
         return methodList.toArray(new Method[methodList.size()]);
     }
 
+    private class TokenEventRequestHandler extends
+            BaseTransportRequestHandler<TokenEventRequest> {
+
+        @Override
+        public TokenEventRequest newInstance() {
+            return new TokenEventRequest();
+        }
+
+        @Override
+        public void messageReceived(final TokenEventRequest request,
+                final TransportChannel channel) throws Exception {
+            applyTokenEvent(request);
+            channel.sendResponse(TransportResponse.Empty.INSTANCE);
+        }
+
+        @Override
+        public String executor() {
+            return ThreadPool.Names.SAME;
+        }
+    }
+
+    private static class ReloadTask {
+        private final boolean delta;
+
+        private final ActionListener<Void> listener;
+
+        private ReloadTask(final boolean delta,
+                final ActionListener<Void> listener) {
+            this.delta = delta;
+            this.listener = listener;
+        }
+    }
 }
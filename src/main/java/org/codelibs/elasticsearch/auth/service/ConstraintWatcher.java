@@ -0,0 +1,137 @@
+package org.codelibs.elasticsearch.auth.service;
+
+import java.util.concurrent.atomic.AtomicBoolean;
+
+import org.elasticsearch.action.ActionListener;
+import org.elasticsearch.action.admin.indices.stats.CommonStats;
+import org.elasticsearch.action.admin.indices.stats.IndicesStatsResponse;
+import org.elasticsearch.client.Client;
+import org.elasticsearch.cluster.ClusterService;
+import org.elasticsearch.common.logging.ESLogger;
+import org.elasticsearch.common.logging.Loggers;
+import org.elasticsearch.common.settings.Settings;
+import org.elasticsearch.common.unit.TimeValue;
+
+public class ConstraintWatcher implements Runnable {
+    private static final ESLogger logger = Loggers
+            .getLogger(ConstraintWatcher.class);
+
+    private final AuthService authService;
+
+    private final Client client;
+
+    private final ClusterService clusterService;
+
+    private final String index;
+
+    private final boolean enabled;
+
+    private final TimeValue interval;
+
+    private final long debounce;
+
+    private final AtomicBoolean running = new AtomicBoolean(false);
+
+    private volatile String lastFingerprint;
+
+    private long lastChanged = -1;
+
+    public ConstraintWatcher(final Settings settings,
+            final AuthService authService, final Client client,
+            final ClusterService clusterService, final String index) {
+        this.authService = authService;
+        this.client = client;
+        this.clusterService = clusterService;
+        this.index = index;
+
+        enabled = settings.getAsBoolean("auth.constraint.watch.enabled", false);
+        interval = settings.getAsTime("auth.constraint.watch.interval",
+                TimeValue.timeValueSeconds(5));
+        debounce = settings.getAsTime("auth.constraint.watch.debounce",
+                TimeValue.timeValueSeconds(2)).millis();
+    }
+
+    public boolean isEnabled() {
+        return enabled && interval.millis() > 0;
+    }
+
+    public TimeValue getInterval() {
+        return interval;
+    }
+
+    @Override
+    public void run() {
+        if (authService.isClusterStateConstraints()
+                && !clusterService.state().nodes().localNodeMaster()) {
+            // constraints are published by the master node
+            lastFingerprint = null;
+            return;
+        }
+        if (!running.compareAndSet(false, true)) {
+            return;
+        }
+
+        client.admin().indices().prepareStats(index).clear()
+                .setIndexing(true).setDocs(true)
+                .execute(new ActionListener<IndicesStatsResponse>() {
+                    @Override
+                    public void onResponse(final IndicesStatsResponse response) {
+                        final CommonStats stats = response.getPrimaries();
+                        final String fingerprint = stats.getIndexing()
+                                .getTotal().getIndexCount()
+                                + ":"
+                                + stats.getIndexing().getTotal()
+                                        .getDeleteCount() + ":"
+                                + stats.getDocs().getCount();
+                        final long now = System.currentTimeMillis();
+                        if (lastFingerprint == null) {
+                            // the first poll: constraints are loaded on start
+                            lastFingerprint = fingerprint;
+                            running.set(false);
+                        } else if (!fingerprint.equals(lastFingerprint)) {
+                            if (logger.isDebugEnabled()) {
+                                logger.debug("{} is changed: {} -> {}", index,
+                                        lastFingerprint, fingerprint);
+                            }
+                            lastFingerprint = fingerprint;
+                            lastChanged = now;
+                            running.set(false);
+                        } else if (lastChanged >= 0
+                                && now - lastChanged >= debounce) {
+                            lastChanged = -1;
+                            reload();
+                        } else {
+                            running.set(false);
+                        }
+                    }
+
+                    @Override
+                    public void onFailure(final Throwable e) {
+                        if (logger.isDebugEnabled()) {
+                            logger.debug("Failed to get stats of {}.", e,
+                                    index);
+                        }
+                        running.set(false);
+                    }
+                });
+    }
+
+    private void reload() {
+        authService.reload(true, new ActionListener<Void>() {
+            @Override
+            public void onResponse(final Void response) {
+                if (logger.isDebugEnabled()) {
+                    logger.debug("Reloaded {} constraint(s).",
+                            authService.getConstraintCount());
+                }
+                running.set(false);
+            }
+
+            @Override
+            public void onFailure(final Throwable e) {
+                logger.warn("Failed to reload constraints.", e);
+                running.set(false);
+            }
+        });
+    }
+}
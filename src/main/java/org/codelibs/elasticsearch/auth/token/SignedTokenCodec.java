@@ -0,0 +1,124 @@
+package org.codelibs.elasticsearch.auth.token;
+
+import java.nio.charset.Charset;
+import java.security.GeneralSecurityException;
+import java.security.MessageDigest;
+import java.security.SecureRandom;
+
+import javax.crypto.Mac;
+import javax.crypto.spec.SecretKeySpec;
+
+import org.apache.commons.codec.binary.Base64;
+import org.apache.commons.codec.binary.Hex;
+
+public class SignedTokenCodec {
+    private static final String ALGORITHM = "HmacSHA256";
+
+    private static final Charset UTF_8 = Charset.forName("UTF-8");
+
+    private static final char SEPARATOR = '\n';
+
+    private static final SecureRandom RANDOM = new SecureRandom();
+
+    private final SecretKeySpec keySpec;
+
+    private final ThreadLocal<Mac> macLocal = new ThreadLocal<Mac>() {
+        @Override
+        protected Mac initialValue() {
+            try {
+                final Mac mac = Mac.getInstance(ALGORITHM);
+                mac.init(keySpec);
+                return mac;
+            } catch (final GeneralSecurityException e) {
+                throw new IllegalStateException("Could not create " + ALGORITHM,
+                        e);
+            }
+        }
+    };
+
+    public SignedTokenCodec(final byte[] key) {
+        keySpec = new SecretKeySpec(key, ALGORITHM);
+    }
+
+    public static byte[] generateKey() {
+        final byte[] key = new byte[32];
+        RANDOM.nextBytes(key);
+        return key;
+    }
+
+    public static boolean isSignedToken(final String token) {
+        return token.indexOf('.') > 0;
+    }
+
+    public static String getSignature(final String token) {
+        return token.substring(token.indexOf('.') + 1);
+    }
+
+    public String encode(final String[] roles, final long expires) {
+        final byte[] nonce = new byte[8];
+        RANDOM.nextBytes(nonce);
+        final StringBuilder buf = new StringBuilder(64);
+        buf.append(expires).append(SEPARATOR)
+                .append(Hex.encodeHexString(nonce));
+        for (final String role : roles) {
+            buf.append(SEPARATOR).append(role);
+        }
+        final byte[] payload = buf.toString().getBytes(UTF_8);
+        return Base64.encodeBase64URLSafeString(payload) + "."
+                + Base64.encodeBase64URLSafeString(sign(payload));
+    }
+
+    public SignedToken decode(final String token) {
+        final int pos = token.indexOf('.');
+        if (pos <= 0 || pos == token.length() - 1) {
+            return null;
+        }
+        final byte[] payload = Base64.decodeBase64(token.substring(0, pos));
+        final byte[] signature = Base64.decodeBase64(token.substring(pos + 1));
+        if (!MessageDigest.isEqual(sign(payload), signature)) {
+            return null;
+        }
+
+        final String[] values = new String(payload, UTF_8).split(
+                String.valueOf(SEPARATOR), -1);
+        if (values.length < 2) {
+            return null;
+        }
+        final long expires;
+        try {
+            expires = Long.parseLong(values[0]);
+        } catch (final NumberFormatException e) {
+            return null;
+        }
+        final String[] roles = new String[values.length - 2];
+        System.arraycopy(values, 2, roles, 0, roles.length);
+        return new SignedToken(roles, expires);
+    }
+
+    private byte[] sign(final byte[] payload) {
+        return macLocal.get().doFinal(payload);
+    }
+
+    public static class SignedToken {
+        private final String[] roles;
+
+        private final long expires;
+
+        SignedToken(final String[] roles, final long expires) {
+            this.roles = roles;
+            this.expires = expires;
+        }
+
+        public String[] getRoles() {
+            return roles;
+        }
+
+        public long getExpires() {
+            return expires;
+        }
+
+        public boolean isExpired(final long now) {
+            return expires <= now;
+        }
+    }
+}
@@ -0,0 +1,345 @@
+package org.codelibs.elasticsearch.auth.token;
+
+import java.util.Date;
+import java.util.HashMap;
+import java.util.Map;
+import java.util.Set;
+import java.util.concurrent.ConcurrentHashMap;
+
+import org.apache.commons.codec.binary.Base64;
+import org.codelibs.elasticsearch.auth.AuthException;
+import org.codelibs.elasticsearch.auth.token.SignedTokenCodec.SignedToken;
+import org.codelibs.elasticsearch.auth.util.MapUtil;
+import org.elasticsearch.ExceptionsHelper;
+import org.elasticsearch.action.ActionListener;
+import org.elasticsearch.action.get.GetResponse;
+import org.elasticsearch.action.index.IndexResponse;
+import org.elasticsearch.action.search.ClearScrollResponse;
+import org.elasticsearch.action.search.SearchResponse;
+import org.elasticsearch.action.search.SearchType;
+import org.elasticsearch.client.Client;
+import org.elasticsearch.common.logging.ESLogger;
+import org.elasticsearch.common.logging.Loggers;
+import org.elasticsearch.common.settings.Settings;
+import org.elasticsearch.common.unit.TimeValue;
+import org.elasticsearch.index.engine.DocumentAlreadyExistsException;
+import org.elasticsearch.index.query.QueryBuilders;
+import org.elasticsearch.rest.RestStatus;
+import org.elasticsearch.search.SearchHit;
+
+public class SignedTokenManager {
+    private static final ESLogger logger = Loggers
+            .getLogger(SignedTokenManager.class);
+
+    private final Client client;
+
+    private final String index;
+
+    private final String keyType;
+
+    private final String keyId;
+
+    private final String revokedType;
+
+    private final long expire;
+
+    private final int maxRevocations;
+
+    private final int pageSize;
+
+    private final TimeValue keepAlive;
+
+    private volatile SignedTokenCodec codec;
+
+    private volatile Map<String, Long> revokedMap = new ConcurrentHashMap<String, Long>();
+
+    public SignedTokenManager(final Settings settings, final Client client,
+            final String index) {
+        this.client = client;
+        this.index = index;
+        keyType = settings.get("auth.token.signed.key_type", "key");
+        keyId = settings.get("auth.token.signed.key_id", "token");
+        revokedType = settings.get("auth.token.signed.revoked_type",
+                "revoked");
+        expire = settings.getAsTime("auth.token.signed.expire",
+                TimeValue.timeValueHours(24)).millis();
+        maxRevocations = settings.getAsInt(
+                "auth.token.signed.revocation.max_size", 10000);
+        pageSize = settings.getAsInt("auth.token.signed.revocation.page_size",
+                500);
+        keepAlive = settings.getAsTime(
+                "auth.token.signed.revocation.keep_alive",
+                TimeValue.timeValueMinutes(1));
+    }
+
+    public String getRevokedType() {
+        return revokedType;
+    }
+
+    public boolean isReady() {
+        return codec != null;
+    }
+
+    public void loadKey(final ActionListener<Void> listener) {
+        if (codec != null) {
+            listener.onResponse(null);
+            return;
+        }
+        client.prepareGet(index, keyType, keyId).execute(
+                new ActionListener<GetResponse>() {
+                    @Override
+                    public void onResponse(final GetResponse response) {
+                        final Map<String, Object> sourceMap = response
+                                .getSource();
+                        if (sourceMap != null) {
+                            final String key = MapUtil.getAsString(sourceMap,
+                                    "key", null);
+                            if (key == null) {
+                                listener.onFailure(new AuthException(
+                                        RestStatus.INTERNAL_SERVER_ERROR,
+                                        "A signing key is broken: " + index
+                                                + "/" + keyType + "/" + keyId));
+                                return;
+                            }
+                            final SignedTokenCodec newCodec = new SignedTokenCodec(
+                                    Base64.decodeBase64(key));
+                            // revoked tokens must be known before accepting tokens
+                            refreshRevocations(new ActionListener<Void>() {
+                                @Override
+                                public void onResponse(final Void response) {
+                                    codec = newCodec;
+                                    listener.onResponse(null);
+                                }
+
+                                @Override
+                                public void onFailure(final Throwable e) {
+                                    listener.onFailure(e);
+                                }
+                            });
+                        } else {
+                            createKey(listener);
+                        }
+                    }
+
+                    @Override
+                    public void onFailure(final Throwable e) {
+                        listener.onFailure(e);
+                    }
+                });
+    }
+
+    private void createKey(final ActionListener<Void> listener) {
+        final Map<String, Object> sourceMap = new HashMap<String, Object>();
+        sourceMap.put("key",
+                Base64.encodeBase64String(SignedTokenCodec.generateKey()));
+        sourceMap.put("created", new Date());
+        client.prepareIndex(index, keyType, keyId).setSource(sourceMap)
+                .setCreate(true).setRefresh(true)
+                .execute(new ActionListener<IndexResponse>() {
+                    @Override
+                    public void onResponse(final IndexResponse response) {
+                        logger.info("Created a token signing key.");
+                        loadKey(listener);
+                    }
+
+                    @Override
+                    public void onFailure(final Throwable e) {
+                        if (ExceptionsHelper.unwrapCause(e) instanceof DocumentAlreadyExistsException) {
+                            // created by another node
+                            loadKey(listener);
+                        } else {
+                            listener.onFailure(e);
+                        }
+                    }
+                });
+    }
+
+    public String createToken(final Set<String> roleSet) {
+        final SignedTokenCodec tokenCodec = codec;
+        if (tokenCodec == null) {
+            throw new AuthException(RestStatus.SERVICE_UNAVAILABLE,
+                    "A signing key is not loaded.");
+        }
+        return tokenCodec.encode(roleSet.toArray(new String[roleSet.size()]),
+                System.currentTimeMillis() + expire);
+    }
+
+    public String[] getRoles(final String token) {
+        final SignedToken signedToken = decode(token);
+        if (signedToken == null) {
+            return null;
+        }
+        return signedToken.getRoles();
+    }
+
+    private SignedToken decode(final String token) {
+        final SignedTokenCodec tokenCodec = codec;
+        if (tokenCodec == null) {
+            return null;
+        }
+        final SignedToken signedToken = tokenCodec.decode(token);
+        if (signedToken == null
+                || signedToken.isExpired(System.currentTimeMillis())
+                || revokedMap.containsKey(SignedTokenCodec
+                        .getSignature(token))) {
+            return null;
+        }
+        return signedToken;
+    }
+
+    public void revoke(final String token, final ActionListener<Void> listener) {
+        final SignedToken signedToken = decode(token);
+        if (signedToken == null) {
+            listener.onFailure(new AuthException(RestStatus.BAD_REQUEST,
+                    "The token does not exist."));
+            return;
+        }
+
+        if (revokedMap.size() >= maxRevocations) {
+            listener.onFailure(new AuthException(
+                    RestStatus.SERVICE_UNAVAILABLE,
+                    "Too many revoked tokens (auth.token.signed.revocation.max_size)."));
+            return;
+        }
+
+        final String signature = SignedTokenCodec.getSignature(token);
+        revokedMap.put(signature, signedToken.getExpires());
+        final Map<String, Object> sourceMap = new HashMap<String, Object>();
+        sourceMap.put("expires", new Date(signedToken.getExpires()));
+        client.prepareIndex(index, revokedType, signature)
+                .setSource(sourceMap).setRefresh(true)
+                .execute(new ActionListener<IndexResponse>() {
+                    @Override
+                    public void onResponse(final IndexResponse response) {
+                        listener.onResponse(null);
+                    }
+
+                    @Override
+                    public void onFailure(final Throwable e) {
+                        listener.onFailure(e);
+                    }
+                });
+    }
+
+    public void addRevocation(final String token) {
+        final SignedToken signedToken = decode(token);
+        if (signedToken != null) {
+            revokedMap.put(SignedTokenCodec.getSignature(token),
+                    signedToken.getExpires());
+        }
+    }
+
+    public void refreshRevocations() {
+        refreshRevocations(new ActionListener<Void>() {
+            @Override
+            public void onResponse(final Void response) {
+                if (logger.isDebugEnabled()) {
+                    logger.debug("Loaded {} revoked token(s).",
+                            revokedMap.size());
+                }
+            }
+
+            @Override
+            public void onFailure(final Throwable e) {
+                logger.warn("Failed to load revoked tokens.", e);
+            }
+        });
+    }
+
+    public void refreshRevocations(final ActionListener<Void> listener) {
+        final Map<String, Long> newRevokedMap = new ConcurrentHashMap<String, Long>();
+        client.prepareSearch(index).setTypes(revokedType)
+                .setSearchType(SearchType.SCAN).setScroll(keepAlive)
+                .setQuery(QueryBuilders.rangeQuery("expires").gt(new Date()))
+                .setSize(pageSize)
+                .execute(new ActionListener<SearchResponse>() {
+                    @Override
+                    public void onResponse(final SearchResponse response) {
+                        final long totalHits = response.getHits()
+                                .getTotalHits();
+                        if (totalHits > maxRevocations) {
+                            logger.warn(
+                                    "{} revoked tokens exceed {} (auth.token.signed.revocation.max_size).",
+                                    totalHits, maxRevocations);
+                        }
+                        if (totalHits == 0) {
+                            clearScroll(response.getScrollId());
+                            applyRevocations(newRevokedMap);
+                            listener.onResponse(null);
+                            return;
+                        }
+                        scroll(response.getScrollId(), newRevokedMap, listener);
+                    }
+
+                    @Override
+                    public void onFailure(final Throwable e) {
+                        listener.onFailure(e);
+                    }
+                });
+    }
+
+    private void scroll(final String scrollId,
+            final Map<String, Long> newRevokedMap,
+            final ActionListener<Void> listener) {
+        client.prepareSearchScroll(scrollId).setScroll(keepAlive)
+                .execute(new ActionListener<SearchResponse>() {
+                    @Override
+                    public void onResponse(final SearchResponse response) {
+                        final SearchHit[] hits = response.getHits().getHits();
+                        if (hits.length == 0) {
+                            clearScroll(response.getScrollId());
+                            applyRevocations(newRevokedMap);
+                            listener.onResponse(null);
+                            return;
+                        }
+                        for (final SearchHit hit : hits) {
+                            final Date expires = MapUtil.getAsDate(
+                                    hit.sourceAsMap(), "expires", null);
+                            newRevokedMap.put(hit.getId(),
+                                    expires != null ? expires.getTime()
+                                            : Long.MAX_VALUE);
+                        }
+                        scroll(response.getScrollId(), newRevokedMap, listener);
+                    }
+
+                    @Override
+                    public void onFailure(final Throwable e) {
+                        clearScroll(scrollId);
+                        listener.onFailure(e);
+                    }
+                });
+    }
+
+    private void applyRevocations(final Map<String, Long> newRevokedMap) {
+        final long now = System.currentTimeMillis();
+        for (final Map.Entry<String, Long> entry : revokedMap.entrySet()) {
+            // keep local revocations which are not searchable yet
+            if (entry.getValue() > now
+                    && !newRevokedMap.containsKey(entry.getKey())) {
+                newRevokedMap.put(entry.getKey(), entry.getValue());
+            }
+        }
+        revokedMap = newRevokedMap;
+    }
+
+    private void clearScroll(final String scrollId) {
+        if (scrollId == null) {
+            return;
+        }
+        client.prepareClearScroll().addScrollId(scrollId)
+                .execute(new ActionListener<ClearScrollResponse>() {
+                    @Override
+                    public void onResponse(final ClearScrollResponse response) {
+                        // nothing
+                    }
+
+                    @Override
+                    public void onFailure(final Throwable e) {
+                        if (logger.isDebugEnabled()) {
+                            logger.debug("Failed to clear a scroll.", e);
+                        }
+                    }
+                });
+    }
+
+}
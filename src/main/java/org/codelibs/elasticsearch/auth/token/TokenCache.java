@@ -0,0 +1,151 @@
+package org.codelibs.elasticsearch.auth.token;
+
+import java.io.IOException;
+import java.util.concurrent.Callable;
+import java.util.concurrent.ExecutionException;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicInteger;
+
+import org.elasticsearch.common.cache.Cache;
+import org.elasticsearch.common.cache.CacheBuilder;
+import org.elasticsearch.common.cache.CacheStats;
+import org.elasticsearch.common.settings.Settings;
+import org.elasticsearch.common.unit.TimeValue;
+import org.elasticsearch.common.xcontent.ToXContent;
+import org.elasticsearch.common.xcontent.XContentBuilder;
+
+public class TokenCache implements ToXContent {
+
+    private final Cache<String, TokenInfo> cache;
+
+    private final Cache<String, AtomicInteger> invalidCache;
+
+    private final int invalidThreshold;
+
+    public TokenCache(final Settings settings) {
+        final long maxSize = settings.getAsLong("auth.token.cache.size",
+                10000L);
+        final TimeValue expire = settings.getAsTime("auth.token.cache.expire",
+                TimeValue.timeValueMinutes(1));
+        if (maxSize > 0) {
+            cache = CacheBuilder.newBuilder().maximumSize(maxSize)
+                    .expireAfterWrite(expire.millis(), TimeUnit.MILLISECONDS)
+                    .recordStats().build();
+        } else {
+            cache = null;
+        }
+
+        final long invalidMaxSize = settings.getAsLong(
+                "auth.token.cache.invalid.size", 10000L);
+        final TimeValue invalidExpire = settings.getAsTime(
+                "auth.token.cache.invalid.expire",
+                TimeValue.timeValueSeconds(10));
+        if (invalidMaxSize > 0) {
+            invalidCache = CacheBuilder.newBuilder()
+                    .maximumSize(invalidMaxSize)
+                    .expireAfterWrite(invalidExpire.millis(),
+                            TimeUnit.MILLISECONDS).recordStats().build();
+        } else {
+            invalidCache = null;
+        }
+        invalidThreshold = settings.getAsInt(
+                "auth.token.cache.invalid.threshold", 10);
+    }
+
+    public boolean isEnabled() {
+        return cache != null;
+    }
+
+    public TokenInfo get(final String token) {
+        if (cache == null) {
+            return null;
+        }
+        return cache.getIfPresent(token);
+    }
+
+    public void put(final String token, final TokenInfo tokenInfo) {
+        if (cache != null) {
+            cache.put(token, tokenInfo);
+        }
+        if (invalidCache != null) {
+            invalidCache.invalidate(token);
+        }
+    }
+
+    public void invalidate(final String token) {
+        if (cache != null) {
+            cache.invalidate(token);
+        }
+    }
+
+    public boolean isInvalid(final String token) {
+        if (invalidCache == null) {
+            return false;
+        }
+        final AtomicInteger count = invalidCache.getIfPresent(token);
+        if (count == null) {
+            return false;
+        }
+        count.incrementAndGet();
+        return true;
+    }
+
+    public void putInvalid(final String token) {
+        if (invalidCache != null) {
+            try {
+                invalidCache.get(token, new Callable<AtomicInteger>() {
+                    @Override
+                    public AtomicInteger call() {
+                        return new AtomicInteger();
+                    }
+                }).incrementAndGet();
+            } catch (final ExecutionException e) {
+                // nothing
+            }
+        }
+    }
+
+    public boolean isRejected(final String token) {
+        if (invalidCache == null || invalidThreshold <= 0) {
+            return false;
+        }
+        final AtomicInteger count = invalidCache.getIfPresent(token);
+        return count != null && count.get() >= invalidThreshold;
+    }
+
+    public void clear() {
+        if (cache != null) {
+            cache.invalidateAll();
+        }
+        if (invalidCache != null) {
+            invalidCache.invalidateAll();
+        }
+    }
+
+    @Override
+    public XContentBuilder toXContent(final XContentBuilder builder,
+            final Params params) throws IOException {
+        builder.startObject("token_cache");
+        builder.field("enabled", cache != null);
+        if (cache != null) {
+            final CacheStats stats = cache.stats();
+            builder.field("size", cache.size());
+            builder.field("hit_count", stats.hitCount());
+            builder.field("miss_count", stats.missCount());
+            builder.field("eviction_count", stats.evictionCount());
+        }
+        builder.endObject();
+        builder.startObject("invalid_token_cache");
+        builder.field("enabled", invalidCache != null);
+        if (invalidCache != null) {
+            final CacheStats stats = invalidCache.stats();
+            builder.field("size", invalidCache.size());
+            builder.field("hit_count", stats.hitCount());
+            builder.field("miss_count", stats.missCount());
+            builder.field("eviction_count", stats.evictionCount());
+            builder.field("threshold", invalidThreshold);
+        }
+        builder.endObject();
+        return builder;
+    }
+}
@@ -0,0 +1,110 @@
+package org.codelibs.elasticsearch.auth.token;
+
+import java.util.ArrayList;
+import java.util.List;
+
+import org.elasticsearch.common.joda.time.format.DateTimeFormat;
+import org.elasticsearch.common.joda.time.format.DateTimeFormatter;
+import org.elasticsearch.common.settings.Settings;
+import org.elasticsearch.common.unit.TimeValue;
+
+public class TokenIndexResolver {
+    private static final DateTimeFormatter BUCKET_FORMAT = DateTimeFormat
+            .forPattern("yyyyMMdd").withZoneUTC();
+
+    private static final DateTimeFormatter INDEX_FORMAT = DateTimeFormat
+            .forPattern("yyyy.MM.dd").withZoneUTC();
+
+    private static final int BUCKET_LENGTH = 8;
+
+    private static final char BUCKET_SEPARATOR = '-';
+
+    private final String index;
+
+    private final boolean rolling;
+
+    private final String prefix;
+
+    private final String alias;
+
+    private final long retention;
+
+    public TokenIndexResolver(final Settings settings, final String index) {
+        this.index = index;
+        rolling = settings.getAsBoolean("auth.token.index.rolling", false);
+        prefix = settings.get("auth.token.index.prefix", index + "-token-");
+        alias = settings.get("auth.token.index.alias", index + "-token");
+        retention = settings.getAsTime("auth.token.index.retention",
+                TimeValue.timeValueHours(24 * 7)).millis();
+    }
+
+    public boolean isRolling() {
+        return rolling;
+    }
+
+    public String getAlias() {
+        return alias;
+    }
+
+    public String getTemplatePattern() {
+        return prefix + "*";
+    }
+
+    public String getSearchIndex() {
+        return rolling ? alias : index;
+    }
+
+    public String createToken(final String id, final long now) {
+        if (!rolling) {
+            return id;
+        }
+        return BUCKET_FORMAT.print(now) + BUCKET_SEPARATOR + id;
+    }
+
+    public String getIndex(final String token) {
+        if (!rolling) {
+            return index;
+        }
+        if (token.length() <= BUCKET_LENGTH
+                || token.charAt(BUCKET_LENGTH) != BUCKET_SEPARATOR) {
+            // created before rolling was enabled
+            return index;
+        }
+        final long time;
+        try {
+            time = BUCKET_FORMAT.parseMillis(token.substring(0, BUCKET_LENGTH));
+        } catch (final IllegalArgumentException e) {
+            return null;
+        }
+        if (isExpired(time, System.currentTimeMillis())) {
+            return null;
+        }
+        return prefix + INDEX_FORMAT.print(time);
+    }
+
+    public String[] getExpiredIndices(final String[] indices, final long now) {
+        final List<String> expiredList = new ArrayList<String>();
+        if (rolling) {
+            for (final String name : indices) {
+                if (!name.startsWith(prefix)) {
+                    continue;
+                }
+                try {
+                    final long time = INDEX_FORMAT.parseMillis(name
+                            .substring(prefix.length()));
+                    if (isExpired(time, now)) {
+                        expiredList.add(name);
+                    }
+                } catch (final IllegalArgumentException e) {
+                    // not a token bucket
+                }
+            }
+        }
+        return expiredList.toArray(new String[expiredList.size()]);
+    }
+
+    private boolean isExpired(final long bucketTime, final long now) {
+        // a bucket holds tokens created within one day
+        return bucketTime + 24 * 60 * 60 * 1000L + retention <= now;
+    }
+}
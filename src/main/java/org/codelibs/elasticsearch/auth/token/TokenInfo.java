@@ -0,0 +1,72 @@
+package org.codelibs.elasticsearch.auth.token;
+
+import java.util.BitSet;
+
+import org.codelibs.elasticsearch.auth.security.RoleRegistry;
+
+public class TokenInfo {
+
+    private final String[] roles;
+
+    private volatile RoleBits roleBits;
+
+    private final long created;
+
+    private volatile long lastModified;
+
+    public TokenInfo(final String[] roles, final long created,
+            final long lastModified) {
+        this.roles = roles;
+        this.created = created;
+        this.lastModified = lastModified;
+    }
+
+    public String[] getRoles() {
+        return roles;
+    }
+
+    public BitSet getRoleBits(final RoleRegistry roleRegistry) {
+        // roles are only looked up, so a token cannot add roles to the registry
+        final int size = roleRegistry.size();
+        RoleBits current = roleBits;
+        if (current == null || current.registrySize != size) {
+            current = new RoleBits(roleRegistry.find(roles), size);
+            roleBits = current;
+        }
+        return current.bits;
+    }
+
+    public long getCreated() {
+        return created;
+    }
+
+    public long getLastModified() {
+        return lastModified;
+    }
+
+    public void setLastModified(final long lastModified) {
+        this.lastModified = lastModified;
+    }
+
+    public boolean isExpired(final long now, final long lifetime,
+            final long idleTimeout) {
+        if (lifetime > 0 && now - created > lifetime) {
+            return true;
+        }
+        if (idleTimeout > 0 && now - lastModified > idleTimeout) {
+            return true;
+        }
+        return false;
+    }
+
+    private static class RoleBits {
+        private final BitSet bits;
+
+        private final int registrySize;
+
+        private RoleBits(final BitSet bits, final int registrySize) {
+            this.bits = bits;
+            this.registrySize = registrySize;
+        }
+    }
+}
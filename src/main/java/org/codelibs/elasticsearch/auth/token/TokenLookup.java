@@ -0,0 +1,62 @@
+package org.codelibs.elasticsearch.auth.token;
+
+import java.util.ArrayList;
+import java.util.List;
+
+import org.elasticsearch.action.ActionListener;
+
+public class TokenLookup implements ActionListener<TokenInfo> {
+
+    private final List<ActionListener<TokenInfo>> listeners = new ArrayList<ActionListener<TokenInfo>>();
+
+    private boolean done = false;
+
+    private TokenInfo tokenInfo;
+
+    private Throwable failure;
+
+    public void addListener(final ActionListener<TokenInfo> listener) {
+        synchronized (this) {
+            if (!done) {
+                listeners.add(listener);
+                return;
+            }
+        }
+        notifyListener(listener);
+    }
+
+    @Override
+    public void onResponse(final TokenInfo tokenInfo) {
+        complete(tokenInfo, null);
+    }
+
+    @Override
+    public void onFailure(final Throwable e) {
+        complete(null, e);
+    }
+
+    private void complete(final TokenInfo tokenInfo, final Throwable failure) {
+        final List<ActionListener<TokenInfo>> targets;
+        synchronized (this) {
+            if (done) {
+                return;
+            }
+            this.tokenInfo = tokenInfo;
+            this.failure = failure;
+            done = true;
+            targets = new ArrayList<ActionListener<TokenInfo>>(listeners);
+            listeners.clear();
+        }
+        for (final ActionListener<TokenInfo> listener : targets) {
+            notifyListener(listener);
+        }
+    }
+
+    private void notifyListener(final ActionListener<TokenInfo> listener) {
+        if (failure != null) {
+            listener.onFailure(failure);
+        } else {
+            listener.onResponse(tokenInfo);
+        }
+    }
+}
@@ -0,0 +1,273 @@
+package org.codelibs.elasticsearch.auth.token;
+
+import java.util.Arrays;
+import java.util.Date;
+import java.util.concurrent.atomic.AtomicBoolean;
+
+import org.elasticsearch.action.ActionListener;
+import org.elasticsearch.action.admin.indices.delete.DeleteIndexResponse;
+import org.elasticsearch.action.bulk.BulkRequestBuilder;
+import org.elasticsearch.action.bulk.BulkResponse;
+import org.elasticsearch.action.search.ClearScrollResponse;
+import org.elasticsearch.action.search.SearchResponse;
+import org.elasticsearch.action.search.SearchType;
+import org.elasticsearch.action.support.IndicesOptions;
+import org.elasticsearch.client.Client;
+import org.elasticsearch.cluster.ClusterService;
+import org.elasticsearch.cluster.metadata.IndexMetaData;
+import org.elasticsearch.cluster.metadata.MetaData;
+import org.elasticsearch.common.logging.ESLogger;
+import org.elasticsearch.common.logging.Loggers;
+import org.elasticsearch.common.settings.Settings;
+import org.elasticsearch.common.unit.TimeValue;
+import org.elasticsearch.index.query.BoolQueryBuilder;
+import org.elasticsearch.index.query.FilterBuilders;
+import org.elasticsearch.index.query.QueryBuilders;
+import org.elasticsearch.search.SearchHit;
+import org.elasticsearch.threadpool.ThreadPool;
+
+public class TokenSweeper implements Runnable {
+    private static final ESLogger logger = Loggers
+            .getLogger(TokenSweeper.class);
+
+    private final Client client;
+
+    private final ThreadPool threadPool;
+
+    private final ClusterService clusterService;
+
+    private final TokenIndexResolver indexResolver;
+
+    private final String[] indices;
+
+    private final String[] types;
+
+    private final String revokedType;
+
+    private final long lifetime;
+
+    private final long idleTimeout;
+
+    private final int batchSize;
+
+    private final TimeValue throttle;
+
+    private final TimeValue keepAlive;
+
+    private final AtomicBoolean running = new AtomicBoolean(false);
+
+    public TokenSweeper(final Settings settings, final Client client,
+            final ThreadPool threadPool, final ClusterService clusterService,
+            final String index, final TokenIndexResolver indexResolver,
+            final String tokenType, final String revokedType) {
+        this.client = client;
+        this.threadPool = threadPool;
+        this.clusterService = clusterService;
+        this.indexResolver = indexResolver;
+        this.revokedType = revokedType;
+        types = revokedType == null ? new String[] { tokenType }
+                : new String[] { tokenType, revokedType };
+        indices = indexResolver.isRolling() ? new String[] {
+                indexResolver.getAlias(), index } : new String[] { index };
+
+        lifetime = settings.getAsTime("auth.token.lifetime",
+                TimeValue.timeValueMillis(-1)).millis();
+        idleTimeout = settings.getAsTime("auth.token.idle_timeout",
+                TimeValue.timeValueMillis(-1)).millis();
+        batchSize = settings.getAsInt("auth.token.sweeper.batch_size", 1000);
+        throttle = settings.getAsTime("auth.token.sweeper.throttle",
+                TimeValue.timeValueSeconds(1));
+        keepAlive = settings.getAsTime("auth.token.sweeper.keep_alive",
+                TimeValue.timeValueMinutes(5));
+    }
+
+    public long getLifetime() {
+        return lifetime;
+    }
+
+    public long getIdleTimeout() {
+        return idleTimeout;
+    }
+
+    public boolean isEnabled() {
+        return lifetime > 0 || idleTimeout > 0 || revokedType != null
+                || indexResolver.isRolling();
+    }
+
+    @Override
+    public void run() {
+        if (!clusterService.state().nodes().localNodeMaster()) {
+            return;
+        }
+        if (running.getAndSet(true)) {
+            logger.debug("The previous sweep is still running.");
+            return;
+        }
+
+        final long now = System.currentTimeMillis();
+        if (indexResolver.isRolling()) {
+            deleteExpiredIndices(now);
+        }
+        if (lifetime <= 0 && idleTimeout <= 0 && revokedType == null) {
+            running.set(false);
+            return;
+        }
+
+        final BoolQueryBuilder query = QueryBuilders.boolQuery();
+        if (lifetime > 0) {
+            query.should(QueryBuilders.rangeQuery("created").lt(
+                    new Date(now - lifetime)));
+            // a token created before "created" was stored
+            query.should(QueryBuilders.filteredQuery(
+                    QueryBuilders.rangeQuery("lastModified").lt(
+                            new Date(now - lifetime)),
+                    FilterBuilders.missingFilter("created")));
+        }
+        if (idleTimeout > 0) {
+            query.should(QueryBuilders.rangeQuery("lastModified").lt(
+                    new Date(now - idleTimeout)));
+        }
+        if (revokedType != null) {
+            query.should(QueryBuilders.rangeQuery("expires").lt(new Date(now)));
+        }
+        try {
+            client.prepareSearch(indices).setTypes(types)
+                    .setIndicesOptions(IndicesOptions.lenientExpandOpen())
+                    .setSearchType(SearchType.SCAN).setScroll(keepAlive)
+                    .setQuery(query).setSize(getScanSize())
+                    .setFetchSource(false)
+                    .execute(new ActionListener<SearchResponse>() {
+                        @Override
+                        public void onResponse(final SearchResponse response) {
+                            if (response.getHits().getTotalHits() == 0) {
+                                finish(response.getScrollId(), 0);
+                            } else {
+                                scroll(response.getScrollId(), 0);
+                            }
+                        }
+
+                        @Override
+                        public void onFailure(final Throwable e) {
+                            logger.warn("Failed to search expired tokens.", e);
+                            running.set(false);
+                        }
+                    });
+        } catch (final Exception e) {
+            logger.warn("Failed to sweep expired tokens.", e);
+            running.set(false);
+        }
+    }
+
+    private int getScanSize() {
+        // a scan returns the size from each shard
+        final MetaData metaData = clusterService.state().metaData();
+        int numOfShards = 0;
+        for (final String name : metaData.concreteIndices(
+                IndicesOptions.lenientExpandOpen(), indices)) {
+            final IndexMetaData indexMetaData = metaData.index(name);
+            if (indexMetaData != null) {
+                numOfShards += indexMetaData.getNumberOfShards();
+            }
+        }
+        return Math.max(1, batchSize / Math.max(1, numOfShards));
+    }
+
+    private void deleteExpiredIndices(final long now) {
+        final String[] expiredIndices = indexResolver.getExpiredIndices(
+                clusterService.state().metaData().concreteAllIndices(), now);
+        if (expiredIndices.length == 0) {
+            return;
+        }
+        client.admin().indices().prepareDelete(expiredIndices)
+                .execute(new ActionListener<DeleteIndexResponse>() {
+                    @Override
+                    public void onResponse(final DeleteIndexResponse response) {
+                        logger.info("Deleted expired token indices: {}",
+                                Arrays.toString(expiredIndices));
+                    }
+
+                    @Override
+                    public void onFailure(final Throwable e) {
+                        logger.warn("Failed to delete expired token indices.",
+                                e);
+                    }
+                });
+    }
+
+    private void scroll(final String scrollId, final long deleted) {
+        client.prepareSearchScroll(scrollId).setScroll(keepAlive)
+                .execute(new ActionListener<SearchResponse>() {
+                    @Override
+                    public void onResponse(final SearchResponse response) {
+                        final SearchHit[] hits = response.getHits().getHits();
+                        if (hits.length == 0) {
+                            finish(response.getScrollId(), deleted);
+                            return;
+                        }
+                        final BulkRequestBuilder bulkRequest = client
+                                .prepareBulk();
+                        for (final SearchHit hit : hits) {
+                            bulkRequest.add(client.prepareDelete(
+                                    hit.getIndex(), hit.getType(), hit.getId()));
+                        }
+                        bulkRequest.execute(new ActionListener<BulkResponse>() {
+                            @Override
+                            public void onResponse(final BulkResponse bulkResponse) {
+                                if (bulkResponse.hasFailures()) {
+                                    logger.warn("Failed to delete expired tokens: "
+                                            + bulkResponse.buildFailureMessage());
+                                }
+                                next(response.getScrollId(), deleted
+                                        + hits.length);
+                            }
+
+                            @Override
+                            public void onFailure(final Throwable e) {
+                                logger.warn("Failed to delete expired tokens.",
+                                        e);
+                                next(response.getScrollId(), deleted);
+                            }
+                        });
+                    }
+
+                    @Override
+                    public void onFailure(final Throwable e) {
+                        logger.warn("Failed to scroll expired tokens.", e);
+                        finish(scrollId, deleted);
+                    }
+                });
+    }
+
+    private void next(final String scrollId, final long deleted) {
+        threadPool.schedule(throttle, ThreadPool.Names.GENERIC, new Runnable() {
+            @Override
+            public void run() {
+                scroll(scrollId, deleted);
+            }
+        });
+    }
+
+    private void finish(final String scrollId, final long deleted) {
+        running.set(false);
+        if (deleted > 0) {
+            logger.info("Deleted {} expired token(s).", deleted);
+        }
+        if (scrollId == null) {
+            return;
+        }
+        client.prepareClearScroll().addScrollId(scrollId)
+                .execute(new ActionListener<ClearScrollResponse>() {
+                    @Override
+                    public void onResponse(final ClearScrollResponse response) {
+                        // nothing
+                    }
+
+                    @Override
+                    public void onFailure(final Throwable e) {
+                        if (logger.isDebugEnabled()) {
+                            logger.debug("Failed to clear a scroll.", e);
+                        }
+                    }
+                });
+    }
+}
@@ -0,0 +1,144 @@
+package org.codelibs.elasticsearch.auth.token;
+
+import java.util.Date;
+import java.util.HashMap;
+import java.util.Map;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.ConcurrentMap;
+
+import org.elasticsearch.action.ActionListener;
+import org.elasticsearch.action.bulk.BulkItemResponse;
+import org.elasticsearch.action.bulk.BulkRequestBuilder;
+import org.elasticsearch.action.bulk.BulkResponse;
+import org.elasticsearch.action.update.UpdateRequestBuilder;
+import org.elasticsearch.client.Client;
+import org.elasticsearch.common.logging.ESLogger;
+import org.elasticsearch.common.logging.Loggers;
+import org.elasticsearch.common.unit.TimeValue;
+
+public class TokenUpdater {
+    private static final ESLogger logger = Loggers
+            .getLogger(TokenUpdater.class);
+
+    private final Client client;
+
+    private final TokenIndexResolver indexResolver;
+
+    private final String type;
+
+    private final long granularity;
+
+    private final int bulkSize;
+
+    private TimeValue ttl;
+
+    private final ConcurrentMap<String, Long> accessTimeMap = new ConcurrentHashMap<String, Long>();
+
+    public TokenUpdater(final Client client,
+            final TokenIndexResolver indexResolver, final String type,
+            final TimeValue granularity, final int bulkSize) {
+        this.client = client;
+        this.indexResolver = indexResolver;
+        this.type = type;
+        this.granularity = granularity.millis();
+        this.bulkSize = bulkSize;
+    }
+
+    public void setTtl(final TimeValue ttl) {
+        this.ttl = ttl;
+    }
+
+    public void record(final String token, final TokenInfo tokenInfo) {
+        final long now = System.currentTimeMillis();
+        if (now - tokenInfo.getLastModified() < granularity) {
+            return;
+        }
+        tokenInfo.setLastModified(now);
+        accessTimeMap.put(token, now);
+    }
+
+    public void remove(final String token) {
+        accessTimeMap.remove(token);
+    }
+
+    public int size() {
+        return accessTimeMap.size();
+    }
+
+    public void flush() {
+        flush(null);
+    }
+
+    public void flush(final TimeValue timeout) {
+        BulkRequestBuilder bulkRequest = null;
+        for (final String token : accessTimeMap.keySet()) {
+            final Long accessTime = accessTimeMap.get(token);
+            // a time recorded after get() stays for the next flush
+            if (accessTime == null || !accessTimeMap.remove(token, accessTime)) {
+                continue;
+            }
+            final String index = indexResolver.getIndex(token);
+            if (index == null) {
+                continue;
+            }
+            if (bulkRequest == null) {
+                bulkRequest = client.prepareBulk();
+            }
+            final Map<String, Object> sourceMap = new HashMap<String, Object>();
+            sourceMap.put("lastModified", new Date(accessTime));
+            final UpdateRequestBuilder updateRequest = client.prepareUpdate(
+                    index, type, token).setDoc(sourceMap);
+            if (ttl != null) {
+                // a partial update keeps the remaining ttl
+                updateRequest.setTtl(ttl.millis());
+            }
+            bulkRequest.add(updateRequest);
+            if (bulkRequest.numberOfActions() >= bulkSize) {
+                execute(bulkRequest, timeout);
+                bulkRequest = null;
+            }
+        }
+        if (bulkRequest != null) {
+            execute(bulkRequest, timeout);
+        }
+    }
+
+    private void execute(final BulkRequestBuilder bulkRequest,
+            final TimeValue timeout) {
+        final int size = bulkRequest.numberOfActions();
+        if (timeout != null) {
+            try {
+                handleResponse(bulkRequest.execute().actionGet(timeout), size);
+            } catch (final Exception e) {
+                logger.warn("Failed to update {} token(s).", e, size);
+            }
+            return;
+        }
+        bulkRequest.execute(new ActionListener<BulkResponse>() {
+            @Override
+            public void onResponse(final BulkResponse response) {
+                handleResponse(response, size);
+            }
+
+            @Override
+            public void onFailure(final Throwable e) {
+                logger.warn("Failed to update {} token(s).", e, size);
+            }
+        });
+    }
+
+    private void handleResponse(final BulkResponse response, final int size) {
+        if (response.hasFailures()) {
+            for (final BulkItemResponse item : response.getItems()) {
+                if (item.isFailed() && logger.isDebugEnabled()) {
+                    logger.debug("Failed to update token: {} ({})",
+                            item.getId(), item.getFailureMessage());
+                }
+            }
+        }
+        if (logger.isDebugEnabled()) {
+            logger.debug("Updated {} token(s) in {}.", size,
+                    response.getTook());
+        }
+    }
+}
@@ -0,0 +1,67 @@
+package org.codelibs.elasticsearch.auth.transport;
+
+import java.io.IOException;
+
+import org.elasticsearch.common.io.stream.StreamInput;
+import org.elasticsearch.common.io.stream.StreamOutput;
+import org.elasticsearch.transport.TransportRequest;
+
+public class TokenEventRequest extends TransportRequest {
+
+    public static final byte CREATE = 0;
+
+    public static final byte REVOKE = 1;
+
+    private byte type;
+
+    private String token;
+
+    private String[] roles;
+
+    private long lastModified;
+
+    public TokenEventRequest() {
+    }
+
+    public TokenEventRequest(final byte type, final String token,
+            final String[] roles, final long lastModified) {
+        this.type = type;
+        this.token = token;
+        this.roles = roles;
+        this.lastModified = lastModified;
+    }
+
+    public byte getType() {
+        return type;
+    }
+
+    public String getToken() {
+        return token;
+    }
+
+    public String[] getRoles() {
+        return roles;
+    }
+
+    public long getLastModified() {
+        return lastModified;
+    }
+
+    @Override
+    public void readFrom(final StreamInput in) throws IOException {
+        super.readFrom(in);
+        type = in.readByte();
+        token = in.readString();
+        roles = in.readStringArray();
+        lastModified = in.readLong();
+    }
+
+    @Override
+    public void writeTo(final StreamOutput out) throws IOException {
+        super.writeTo(out);
+        out.writeByte(type);
+        out.writeString(token);
+        out.writeStringArray(roles);
+        out.writeLong(lastModified);
+    }
+}
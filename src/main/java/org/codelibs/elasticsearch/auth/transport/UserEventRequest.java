@@ -0,0 +1,35 @@
+package org.codelibs.elasticsearch.auth.transport;
+
+import java.io.IOException;
+
+import org.elasticsearch.common.io.stream.StreamInput;
+import org.elasticsearch.common.io.stream.StreamOutput;
+import org.elasticsearch.transport.TransportRequest;
+
+public class UserEventRequest extends TransportRequest {
+
+    private String username;
+
+    public UserEventRequest() {
+    }
+
+    public UserEventRequest(final String username) {
+        this.username = username;
+    }
+
+    public String getUsername() {
+        return username;
+    }
+
+    @Override
+    public void readFrom(final StreamInput in) throws IOException {
+        super.readFrom(in);
+        username = in.readString();
+    }
+
+    @Override
+    public void writeTo(final StreamOutput out) throws IOException {
+        super.writeTo(out);
+        out.writeString(username);
+    }
+}
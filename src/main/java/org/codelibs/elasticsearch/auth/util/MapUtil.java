@@ -7,6 +7,7 @@ import java.util.Date;
 import java.util.List;
 import java.util.Locale;
 import java.util.Map;
+import java.util.TimeZone;
 
 public class MapUtil {
     public static final String DATE_TIME_FORMAT = "yyyy-MM-dd'T'HH:mm:ss.SSS";
@@ -71,6 +72,7 @@ public class MapUtil {
         if (obj instanceof String) {
             final SimpleDateFormat sdf = new SimpleDateFormat(DATE_TIME_FORMAT,
                     Locale.ROOT);
+            sdf.setTimeZone(TimeZone.getTimeZone("UTC"));
             try {
                 return sdf.parse(obj.toString());
             } catch (final ParseException e) {
@@ -78,6 +80,8 @@ public class MapUtil {
             }
         } else if (obj instanceof Date) {
             return (Date) obj;
+        } else if (obj instanceof Number) {
+            return new Date(((Number) obj).longValue());
         }
         return defaultValue;
     }
@@ -33,6 +33,19 @@ public class AuthPluginTest extends TestCase {
 
         // wait for yellow status
         runner.ensureYellow();
+
+        // wait for AuthService
+        boolean ready = false;
+        for (int i = 0; i < 100 && !ready; i++) {
+            try (CurlResponse curlResponse = Curl.get(runner.node(),
+                    "/_auth/status").execute()) {
+                ready = curlResponse.getHttpStatusCode() == 200;
+            }
+            if (!ready) {
+                Thread.sleep(100);
+            }
+        }
+        assertTrue("AuthService is not ready.", ready);
     }
 
     @Override
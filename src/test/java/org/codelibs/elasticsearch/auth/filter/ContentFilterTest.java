@@ -0,0 +1,158 @@
+package org.codelibs.elasticsearch.auth.filter;
+
+import java.util.concurrent.CountDownLatch;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicInteger;
+import java.util.concurrent.atomic.AtomicReference;
+
+import junit.framework.TestCase;
+
+import org.codelibs.elasticsearch.auth.security.ConstraintMatcher;
+import org.codelibs.elasticsearch.auth.security.LoginConstraint;
+import org.elasticsearch.common.netty.handler.codec.http.DefaultHttpRequest;
+import org.elasticsearch.common.netty.handler.codec.http.HttpMethod;
+import org.elasticsearch.common.netty.handler.codec.http.HttpVersion;
+import org.elasticsearch.common.unit.TimeValue;
+import org.elasticsearch.http.netty.NettyHttpRequest;
+import org.elasticsearch.rest.RestChannel;
+import org.elasticsearch.rest.RestFilterChain;
+import org.elasticsearch.rest.RestRequest;
+import org.elasticsearch.rest.RestResponse;
+import org.elasticsearch.rest.RestStatus;
+import org.elasticsearch.threadpool.ThreadPool;
+
+public class ContentFilterTest extends TestCase {
+
+    private ThreadPool threadPool;
+
+    private ContentFilter contentFilter;
+
+    @Override
+    protected void setUp() throws Exception {
+        threadPool = new ThreadPool("test");
+        // no constraints, so authService is not used
+        contentFilter = new ContentFilter(null, threadPool);
+    }
+
+    @Override
+    protected void tearDown() throws Exception {
+        threadPool.shutdownNow();
+    }
+
+    public void test_release() throws Exception {
+        final TestChain chain = new TestChain(2);
+        final TestChannel channel1 = new TestChannel("/aaa");
+        final TestChannel channel2 = new TestChannel("/bbb");
+        contentFilter.process(channel1.restRequest, channel1, chain);
+        contentFilter.process(channel2.restRequest, channel2, chain);
+        assertEquals(2, contentFilter.getPendingCount());
+        assertEquals(0, chain.count.get());
+
+        contentFilter.setConstraintMatcher(new EmptyMatcher());
+        assertTrue(chain.latch.await(10, TimeUnit.SECONDS));
+        assertEquals(2, chain.count.get());
+        assertEquals(0, contentFilter.getPendingCount());
+        assertNull(channel1.status.get());
+        assertNull(channel2.status.get());
+
+        // not queued after the matcher is installed
+        final TestChannel channel3 = new TestChannel("/ccc");
+        contentFilter.process(channel3.restRequest, channel3, chain);
+        assertEquals(3, chain.count.get());
+        assertEquals(0, contentFilter.getPendingCount());
+    }
+
+    public void test_statusPath() {
+        final TestChain chain = new TestChain(1);
+        final TestChannel channel = new TestChannel("/_auth/status");
+        contentFilter.process(channel.restRequest, channel, chain);
+        assertEquals(1, chain.count.get());
+        assertEquals(0, contentFilter.getPendingCount());
+    }
+
+    public void test_queueFull() {
+        contentFilter.setMaxPendingRequests(1);
+        final TestChain chain = new TestChain(1);
+        final TestChannel channel1 = new TestChannel("/aaa");
+        final TestChannel channel2 = new TestChannel("/bbb");
+        contentFilter.process(channel1.restRequest, channel1, chain);
+        contentFilter.process(channel2.restRequest, channel2, chain);
+
+        assertEquals(1, contentFilter.getPendingCount());
+        assertNull(channel1.status.get());
+        assertEquals(RestStatus.SERVICE_UNAVAILABLE, channel2.status.get());
+    }
+
+    public void test_timeout() throws Exception {
+        contentFilter.setPendingTimeout(TimeValue.timeValueMillis(100));
+        final TestChain chain = new TestChain(1);
+        final TestChannel channel = new TestChannel("/aaa");
+        contentFilter.process(channel.restRequest, channel, chain);
+
+        assertTrue(channel.latch.await(10, TimeUnit.SECONDS));
+        assertEquals(RestStatus.SERVICE_UNAVAILABLE, channel.status.get());
+        assertEquals(0, contentFilter.getPendingCount());
+
+        // a timed out request is not processed again
+        contentFilter.setConstraintMatcher(new EmptyMatcher());
+        Thread.sleep(100);
+        assertEquals(0, chain.count.get());
+    }
+
+    private static RestRequest createRequest(final String uri) {
+        return new NettyHttpRequest(new DefaultHttpRequest(
+                HttpVersion.HTTP_1_1, HttpMethod.GET, uri), null);
+    }
+
+    private static class EmptyMatcher implements ConstraintMatcher {
+        @Override
+        public LoginConstraint match(final String rawPath) {
+            return null;
+        }
+
+        @Override
+        public int size() {
+            return 0;
+        }
+    }
+
+    private static class TestChain implements RestFilterChain {
+        private final AtomicInteger count = new AtomicInteger();
+
+        private final CountDownLatch latch;
+
+        private TestChain(final int expected) {
+            latch = new CountDownLatch(expected);
+        }
+
+        @Override
+        public void continueProcessing(final RestRequest request,
+                final RestChannel channel) {
+            count.incrementAndGet();
+            latch.countDown();
+        }
+    }
+
+    private static class TestChannel extends RestChannel {
+        private final RestRequest restRequest;
+
+        private final AtomicReference<RestStatus> status = new AtomicReference<RestStatus>();
+
+        private final CountDownLatch latch = new CountDownLatch(1);
+
+        private TestChannel(final String uri) {
+            this(createRequest(uri));
+        }
+
+        private TestChannel(final RestRequest request) {
+            super(request);
+            this.restRequest = request;
+        }
+
+        @Override
+        public void sendResponse(final RestResponse response) {
+            status.set(response.status());
+            latch.countDown();
+        }
+    }
+}
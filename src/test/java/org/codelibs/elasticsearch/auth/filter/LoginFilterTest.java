@@ -0,0 +1,211 @@
+package org.codelibs.elasticsearch.auth.filter;
+
+import static org.codelibs.elasticsearch.runner.ElasticsearchClusterRunner.newConfigs;
+
+import java.util.Arrays;
+import java.util.HashSet;
+import java.util.List;
+import java.util.Set;
+import java.util.concurrent.atomic.AtomicInteger;
+
+import junit.framework.TestCase;
+
+import org.codelibs.elasticsearch.auth.security.Authenticator;
+import org.codelibs.elasticsearch.auth.service.AuthService;
+import org.codelibs.elasticsearch.auth.util.MapUtil;
+import org.codelibs.elasticsearch.runner.ElasticsearchClusterRunner;
+import org.codelibs.elasticsearch.runner.net.Curl;
+import org.codelibs.elasticsearch.runner.net.CurlResponse;
+import org.elasticsearch.action.ActionListener;
+import org.elasticsearch.action.get.GetResponse;
+import org.elasticsearch.common.settings.ImmutableSettings.Builder;
+import org.elasticsearch.node.internal.InternalNode;
+import org.elasticsearch.rest.RestRequest;
+
+public class LoginFilterTest extends TestCase {
+
+    private ElasticsearchClusterRunner runner;
+
+    private AuthService authService;
+
+    private void startCluster(final String mode, final String order,
+            final String timeout) throws Exception {
+        runner = new ElasticsearchClusterRunner();
+        runner.onBuild(new ElasticsearchClusterRunner.Builder() {
+            @Override
+            public void build(final int number, final Builder settingBuilder) {
+                settingBuilder.put("auth.login.mode", mode);
+                if (order != null) {
+                    settingBuilder.put("auth.login.authenticators", order);
+                }
+                if (timeout != null) {
+                    settingBuilder.put("auth.login.timeout", timeout);
+                }
+            }
+        }).build(
+                newConfigs()
+                        .clusterName("es-auth" + System.currentTimeMillis())
+                        .ramIndexStore().numOfNode(1));
+        runner.ensureYellow();
+
+        boolean ready = false;
+        for (int i = 0; i < 100 && !ready; i++) {
+            try (CurlResponse curlResponse = Curl.get(runner.node(),
+                    "/_auth/status").execute()) {
+                ready = curlResponse.getHttpStatusCode() == 200;
+            }
+            if (!ready) {
+                Thread.sleep(100);
+            }
+        }
+        assertTrue("AuthService is not ready.", ready);
+
+        authService = ((InternalNode) runner.node()).injector().getInstance(
+                AuthService.class);
+    }
+
+    @Override
+    protected void tearDown() throws Exception {
+        if (runner != null) {
+            runner.close();
+            runner.clean();
+        }
+    }
+
+    public void test_all() throws Exception {
+        startCluster("all", null, null);
+        final TestAuthenticator aaa = new TestAuthenticator("aaa");
+        final TestAuthenticator bbb = new TestAuthenticator("bbb");
+        final TestAuthenticator none = new TestAuthenticator();
+        authService.registerAuthenticator("aaa", aaa);
+        authService.registerAuthenticator("bbb", bbb);
+        authService.registerAuthenticator("none", none);
+
+        // roles of all authenticators are merged
+        assertEquals(new HashSet<String>(Arrays.asList("aaa", "bbb")),
+                login());
+        assertEquals(1, aaa.count.get());
+        assertEquals(1, bbb.count.get());
+        assertEquals(1, none.count.get());
+    }
+
+    public void test_ordered() throws Exception {
+        startCluster("ordered", "none,bbb,aaa", null);
+        final TestAuthenticator aaa = new TestAuthenticator("aaa");
+        final TestAuthenticator bbb = new TestAuthenticator("bbb");
+        final TestAuthenticator none = new TestAuthenticator();
+        authService.registerAuthenticator("aaa", aaa);
+        authService.registerAuthenticator("bbb", bbb);
+        authService.registerAuthenticator("none", none);
+
+        // the first authenticator which returns roles is used
+        assertEquals(new HashSet<String>(Arrays.asList("bbb")), login());
+        assertEquals(1, none.count.get());
+        assertEquals(1, bbb.count.get());
+        assertEquals(0, aaa.count.get());
+    }
+
+    public void test_first() throws Exception {
+        startCluster("first", null, null);
+        final TestAuthenticator slow = new TestAuthenticator();
+        slow.respond = false;
+        final TestAuthenticator aaa = new TestAuthenticator("aaa");
+        authService.registerAuthenticator("slow", slow);
+        authService.registerAuthenticator("aaa", aaa);
+
+        // a pending authenticator does not block the login
+        assertEquals(new HashSet<String>(Arrays.asList("aaa")), login());
+        assertEquals(1, slow.count.get());
+        assertEquals(1, aaa.count.get());
+    }
+
+    public void test_timeout() throws Exception {
+        startCluster("ordered", "slow,aaa", "500ms");
+        final TestAuthenticator slow = new TestAuthenticator();
+        slow.respond = false;
+        final TestAuthenticator aaa = new TestAuthenticator("aaa");
+        authService.registerAuthenticator("slow", slow);
+        authService.registerAuthenticator("aaa", aaa);
+
+        // the next authenticator is asked after the timeout
+        final long startTime = System.currentTimeMillis();
+        assertEquals(new HashSet<String>(Arrays.asList("aaa")), login());
+        assertTrue(System.currentTimeMillis() - startTime >= 500);
+        assertEquals(1, slow.count.get());
+        assertEquals(1, aaa.count.get());
+
+        // a response after the timeout is ignored
+        slow.listener.onResponse(new String[] { "slow" });
+    }
+
+    public void test_timeoutOnly() throws Exception {
+        startCluster("all", "slow", "500ms");
+        final TestAuthenticator slow = new TestAuthenticator();
+        slow.respond = false;
+        authService.registerAuthenticator("slow", slow);
+
+        try (CurlResponse curlResponse = Curl.post(runner.node(), "/login")
+                .body("{\"username\":\"taro\",\"password\":\"taro123\"}")
+                .execute()) {
+            assertEquals(400, curlResponse.getHttpStatusCode());
+        }
+        assertEquals(1, slow.count.get());
+    }
+
+    private Set<String> login() {
+        final String token;
+        try (CurlResponse curlResponse = Curl.post(runner.node(), "/login")
+                .body("{\"username\":\"taro\",\"password\":\"taro123\"}")
+                .execute()) {
+            assertEquals(200, curlResponse.getHttpStatusCode());
+            token = curlResponse.getContentAsMap().get("token").toString();
+        }
+        final GetResponse response = runner.client()
+                .prepareGet("auth", "token", token).execute().actionGet();
+        final List<String> roles = MapUtil.getAsList(response.getSource(),
+                "roles", null);
+        return new HashSet<String>(roles);
+    }
+
+    private static class TestAuthenticator implements Authenticator {
+        private final String[] roles;
+
+        private final AtomicInteger count = new AtomicInteger();
+
+        private volatile boolean respond = true;
+
+        private volatile ActionListener<String[]> listener;
+
+        private TestAuthenticator(final String... roles) {
+            this.roles = roles;
+        }
+
+        @Override
+        public void login(final RestRequest request,
+                final ActionListener<String[]> listener) {
+            count.incrementAndGet();
+            this.listener = listener;
+            if (respond) {
+                listener.onResponse(roles);
+            }
+        }
+
+        @Override
+        public void createUser(final String username, final String password,
+                final String[] roles, final ActionListener<Void> listener) {
+            throw new UnsupportedOperationException();
+        }
+
+        @Override
+        public void updateUser(final String username, final String password,
+                final String[] roles, final ActionListener<Void> listener) {
+            throw new UnsupportedOperationException();
+        }
+
+        @Override
+        public void deleteUser(final String username,
+                final ActionListener<Void> listener) {
+            throw new UnsupportedOperationException();
+        }
+    }
+}
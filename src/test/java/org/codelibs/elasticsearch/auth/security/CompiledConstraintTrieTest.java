@@ -0,0 +1,97 @@
+package org.codelibs.elasticsearch.auth.security;
+
+import java.util.HashMap;
+import java.util.Map;
+import java.util.Random;
+
+import junit.framework.TestCase;
+
+public class CompiledConstraintTrieTest extends TestCase {
+
+    private final RoleRegistry roleRegistry = new RoleRegistry();
+
+    public void test_match() {
+        final LoginConstraint[] constraints = new LoginConstraint[] {
+                create("/aaa"), create("/aaa/bbb"), create("/ab") };
+        final CompiledConstraintTrie trie = new CompiledConstraintTrie(
+                constraints);
+
+        assertEquals(3, trie.size());
+        assertSame(constraints[0], trie.match("/aaa/_search"));
+        assertSame(constraints[1], trie.match("/aaa/bbb"));
+        assertSame(constraints[2], trie.match("/abc"));
+        assertNull(trie.match("/a"));
+        assertNull(trie.match(""));
+    }
+
+    public void test_empty() {
+        final CompiledConstraintTrie trie = new CompiledConstraintTrie(
+                new LoginConstraint[0]);
+
+        assertEquals(0, trie.size());
+        assertNull(trie.match("/aaa"));
+    }
+
+    public void test_random() {
+        final Random random = new Random(1L);
+        for (int n = 0; n < 200; n++) {
+            final LoginConstraint[] constraints = randomConstraints(random,
+                    random.nextInt(n < 100 ? 10 : 200));
+            final ConstraintTrie trie = new ConstraintTrie(constraints);
+            final CompiledConstraintTrie compiled = new CompiledConstraintTrie(
+                    constraints);
+            assertEquals(trie.size(), compiled.size());
+            for (int k = 0; k < 100; k++) {
+                final String path = randomPath(random, 8);
+                assertSame(path, trie.match(path), compiled.match(path));
+            }
+        }
+    }
+
+    public void test_randomWideNodes() {
+        final Random random = new Random(2L);
+        // wide nodes use a binary search instead of a linear scan
+        final LoginConstraint[] constraints = new LoginConstraint[200];
+        for (int i = 0; i < constraints.length; i++) {
+            final StringBuilder buf = new StringBuilder("/");
+            buf.append((char) ('0' + random.nextInt(64)));
+            buf.append((char) ('0' + random.nextInt(64)));
+            constraints[i] = create(buf.toString());
+        }
+        final ConstraintTrie trie = new ConstraintTrie(constraints);
+        final CompiledConstraintTrie compiled = new CompiledConstraintTrie(
+                trie);
+        for (int k = 0; k < 1000; k++) {
+            final String path = "/" + (char) ('0' + random.nextInt(70))
+                    + (char) ('0' + random.nextInt(70)) + "/x";
+            assertSame(path, trie.match(path), compiled.match(path));
+        }
+    }
+
+    private String randomPath(final Random random, final int maxLength) {
+        final char[] chars = new char[] { 'a', 'b', 'c', '/' };
+        final StringBuilder buf = new StringBuilder("/");
+        final int length = random.nextInt(maxLength);
+        for (int i = 0; i < length; i++) {
+            buf.append(chars[random.nextInt(chars.length)]);
+        }
+        return buf.toString();
+    }
+
+    private LoginConstraint[] randomConstraints(final Random random,
+            final int size) {
+        final Map<String, LoginConstraint> constraintMap = new HashMap<String, LoginConstraint>();
+        for (int i = 0; i < size; i++) {
+            final String path = randomPath(random, 6);
+            constraintMap.put(path, create(path));
+        }
+        return constraintMap.values().toArray(
+                new LoginConstraint[constraintMap.size()]);
+    }
+
+    private LoginConstraint create(final String path) {
+        final LoginConstraint constraint = new LoginConstraint(roleRegistry);
+        constraint.setPath(path);
+        return constraint;
+    }
+}
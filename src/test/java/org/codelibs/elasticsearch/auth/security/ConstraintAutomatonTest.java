@@ -0,0 +1,176 @@
+package org.codelibs.elasticsearch.auth.security;
+
+import java.util.Random;
+import java.util.regex.Pattern;
+
+import junit.framework.TestCase;
+
+public class ConstraintAutomatonTest extends TestCase {
+
+    private final RoleRegistry roleRegistry = new RoleRegistry();
+
+    public void test_wildcards() {
+        final LoginConstraint[] constraints = new LoginConstraint[] {
+                create("/*/_search"), create("/logs-*/"), create("/a?c"),
+                create("/docs/**/edit"), create("/logs-2015/") };
+        final ConstraintAutomaton automaton = new ConstraintAutomaton(
+                constraints, 1000);
+
+        assertEquals(5, automaton.size());
+        assertSame(constraints[0], automaton.match("/aaa/_search"));
+        assertSame(constraints[0], automaton.match("/aaa/_search?q=*:*"));
+        assertNull(automaton.match("/aaa/bbb/_search"));
+        assertSame(constraints[1], automaton.match("/logs-2014/type"));
+        // more literal characters win
+        assertSame(constraints[4], automaton.match("/logs-2015/type"));
+        assertSame(constraints[2], automaton.match("/abc"));
+        // ? does not match /
+        assertNull(automaton.match("/a/c"));
+        assertSame(constraints[3], automaton.match("/docs/a/b/c/edit"));
+        assertSame(constraints[3], automaton.match("/docs//edit"));
+        assertNull(automaton.match("/docs/a/b/c"));
+        assertNull(automaton.match(""));
+        assertTrue(automaton.getNumberOfStates() > 1);
+    }
+
+    public void test_longestPrefix() {
+        final LoginConstraint[] constraints = new LoginConstraint[] {
+                create("/"), create("/a*"), create("/a*/b") };
+        final ConstraintAutomaton automaton = new ConstraintAutomaton(
+                constraints, 1000);
+
+        assertSame(constraints[0], automaton.match("/"));
+        assertSame(constraints[1], automaton.match("/abc"));
+        assertSame(constraints[1], automaton.match("/abc/c"));
+        assertSame(constraints[2], automaton.match("/abc/bc"));
+        assertSame(constraints[0], automaton.match("/xyz"));
+    }
+
+    public void test_escape() {
+        final LoginConstraint[] constraints = new LoginConstraint[] {
+                create("/a\\*"), create("/b\\?c"), create("/x*") };
+        final ConstraintAutomaton automaton = new ConstraintAutomaton(
+                constraints, 1000);
+
+        assertSame(constraints[0], automaton.match("/a*"));
+        assertNull(automaton.match("/ab"));
+        assertSame(constraints[1], automaton.match("/b?c"));
+        assertNull(automaton.match("/bxc"));
+
+        assertFalse(ConstraintAutomaton.isPattern("/a\\*"));
+        assertFalse(ConstraintAutomaton.isPattern("/b\\?c"));
+        assertTrue(ConstraintAutomaton.isPattern("/a\\\\*"));
+        assertEquals("/a*", ConstraintAutomaton.unescape("/a\\*"));
+        assertEquals("/a\\", ConstraintAutomaton.unescape("/a\\\\"));
+        assertEquals("/a\\", ConstraintAutomaton.unescape("/a\\"));
+
+        // the trie unescapes paths in the same way
+        final ConstraintTrie trie = new ConstraintTrie(new LoginConstraint[] {
+                constraints[0], constraints[1] });
+        assertSame(constraints[0], trie.match("/a*"));
+        assertNull(trie.match("/ab"));
+        assertSame(constraints[1], trie.match("/b?c"));
+    }
+
+    public void test_tooManyStates() {
+        final LoginConstraint[] constraints = new LoginConstraint[] {
+                create("/*a*b*c*d"), create("/*b*c*d*a"), create("/*c*d*a*b") };
+        try {
+            new ConstraintAutomaton(constraints, 4);
+            fail();
+        } catch (final IllegalStateException e) {
+            // expected
+        }
+    }
+
+    public void test_random() {
+        final Random random = new Random(1L);
+        final String[] tokens = new String[] { "a", "b", "/", "?", "*", "**" };
+        final char[] chars = new char[] { 'a', 'b', 'c', '/' };
+        for (int n = 0; n < 200; n++) {
+            final LoginConstraint[] constraints = new LoginConstraint[1 + random
+                    .nextInt(6)];
+            for (int i = 0; i < constraints.length; i++) {
+                final StringBuilder buf = new StringBuilder("/");
+                final int length = random.nextInt(5);
+                for (int j = 0; j < length; j++) {
+                    buf.append(tokens[random.nextInt(tokens.length)]);
+                }
+                constraints[i] = create(buf.toString());
+            }
+            final ConstraintAutomaton automaton = new ConstraintAutomaton(
+                    constraints, 100000);
+            for (int k = 0; k < 50; k++) {
+                final StringBuilder buf = new StringBuilder("/");
+                final int length = random.nextInt(8);
+                for (int j = 0; j < length; j++) {
+                    buf.append(chars[random.nextInt(chars.length)]);
+                }
+                final String path = buf.toString();
+                assertSame(path, expected(constraints, path),
+                        automaton.match(path));
+            }
+        }
+    }
+
+    private LoginConstraint expected(final LoginConstraint[] constraints,
+            final String path) {
+        final Pattern[] patterns = new Pattern[constraints.length];
+        for (int i = 0; i < constraints.length; i++) {
+            patterns[i] = toRegex(constraints[i].getPath());
+        }
+        for (int end = path.length(); end >= 0; end--) {
+            final String prefix = path.substring(0, end);
+            LoginConstraint best = null;
+            int bestCount = -1;
+            for (int i = 0; i < constraints.length; i++) {
+                final int count = countLiterals(constraints[i].getPath());
+                if (patterns[i].matcher(prefix).matches() && count > bestCount) {
+                    best = constraints[i];
+                    bestCount = count;
+                }
+            }
+            if (best != null) {
+                return best;
+            }
+        }
+        return null;
+    }
+
+    private Pattern toRegex(final String path) {
+        final StringBuilder buf = new StringBuilder();
+        for (int i = 0; i < path.length(); i++) {
+            final char ch = path.charAt(i);
+            if (ch == '?') {
+                buf.append("[^/]");
+            } else if (ch == '*') {
+                if (i + 1 < path.length() && path.charAt(i + 1) == '*') {
+                    i++;
+                    buf.append(".*");
+                } else {
+                    buf.append("[^/]*");
+                }
+            } else {
+                buf.append(Pattern.quote(String.valueOf(ch)));
+            }
+        }
+        return Pattern.compile(buf.toString());
+    }
+
+    private int countLiterals(final String path) {
+        int count = 0;
+        for (int i = 0; i < path.length(); i++) {
+            final char ch = path.charAt(i);
+            if (ch != '?' && ch != '*') {
+                count++;
+            }
+        }
+        return count;
+    }
+
+    private LoginConstraint create(final String path) {
+        final LoginConstraint constraint = new LoginConstraint(roleRegistry);
+        constraint.setPath(path);
+        return constraint;
+    }
+}
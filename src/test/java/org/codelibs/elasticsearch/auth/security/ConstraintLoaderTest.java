@@ -0,0 +1,119 @@
+package org.codelibs.elasticsearch.auth.security;
+
+import java.util.Arrays;
+import java.util.Collections;
+import java.util.HashMap;
+import java.util.HashSet;
+import java.util.LinkedHashMap;
+import java.util.Map;
+import java.util.Set;
+
+import junit.framework.TestCase;
+
+import org.codelibs.elasticsearch.auth.security.ConstraintLoader.ConstraintDoc;
+import org.codelibs.elasticsearch.auth.security.ConstraintLoader.State;
+import org.elasticsearch.common.settings.ImmutableSettings;
+import org.elasticsearch.rest.RestRequest.Method;
+
+public class ConstraintLoaderTest extends TestCase {
+
+    private final ConstraintLoader constraintLoader = new ConstraintLoader(
+            ImmutableSettings.EMPTY, null, new RoleRegistry(), "security",
+            "constraint");
+
+    public void test_apply() {
+        final Map<String, ConstraintDoc> docMap = new HashMap<String, ConstraintDoc>();
+        docMap.put("1", doc(new String[] { "/aaa", "/bbb" }, "admin"));
+        docMap.put("2", doc(new String[] { "/bbb" }, "user"));
+        final State base = constraintLoader.apply(null, docMap,
+                Collections.<String> emptySet());
+
+        assertEquals(2, base.getConstraints().length);
+        assertEquals(2, base.getChanges().size());
+        assertEquals(set("/aaa", "/bbb"), paths(base));
+        assertEquals(set("admin", "user"), roles(base, "/bbb"));
+
+        // change a doc and delete a doc
+        final Map<String, ConstraintDoc> changedDocs = new HashMap<String, ConstraintDoc>();
+        changedDocs.put("3", doc(new String[] { "/ccc" }, "user"));
+        final State state = constraintLoader.apply(base, changedDocs,
+                set("1"));
+
+        assertEquals(set("/bbb", "/ccc"), paths(state));
+        assertEquals(set("user"), roles(state, "/bbb"));
+        final Map<String, LoginConstraint> changes = state.getChanges();
+        assertEquals(3, changes.size());
+        assertTrue(changes.containsKey("/aaa"));
+        assertNull(changes.get("/aaa"));
+        assertEquals("/bbb", changes.get("/bbb").getPath());
+        assertEquals("/ccc", changes.get("/ccc").getPath());
+
+        // the base state is not changed
+        assertEquals(set("/aaa", "/bbb"), paths(base));
+        assertEquals(set("admin", "user"), roles(base, "/bbb"));
+        final State state2 = constraintLoader.apply(base,
+                Collections.<String, ConstraintDoc> emptyMap(), set("2"));
+        assertEquals(set("/aaa", "/bbb"), paths(state2));
+        assertEquals(set("admin"), roles(state2, "/bbb"));
+    }
+
+    public void test_applyNoChanges() {
+        final Map<String, ConstraintDoc> docMap = new HashMap<String, ConstraintDoc>();
+        docMap.put("1", doc(new String[] { "/aaa" }, "admin"));
+        final State base = constraintLoader.apply(null, docMap,
+                Collections.<String> emptySet());
+
+        final State state = constraintLoader.apply(base,
+                Collections.<String, ConstraintDoc> emptyMap(), set("2"));
+        assertSame(base.getConstraints(), state.getConstraints());
+        assertTrue(state.getChanges().isEmpty());
+    }
+
+    public void test_parse() {
+        final Map<String, Object> sourceMap = new LinkedHashMap<String, Object>();
+        sourceMap.put("paths", Arrays.asList("/aaa"));
+        sourceMap.put("methods", Arrays.asList("get"));
+        sourceMap.put("roles", Arrays.asList("admin"));
+        final Map<String, ConstraintDoc> docMap = new HashMap<String, ConstraintDoc>();
+        docMap.put("1", constraintLoader.parse(sourceMap, 1));
+        // an invalid doc has no paths
+        docMap.put("2", constraintLoader.parse(
+                Collections.<String, Object> singletonMap("paths",
+                        Arrays.asList("/bbb")), 1));
+        final State state = constraintLoader.apply(null, docMap,
+                Collections.<String> emptySet());
+
+        assertEquals(set("/aaa"), paths(state));
+        final LoginConstraint constraint = state.getConstraints()[0];
+        assertEquals(set("admin"), set(constraint.getRoles(Method.GET)));
+        assertEquals(0, constraint.getRoles(Method.PUT).length);
+    }
+
+    private ConstraintDoc doc(final String[] paths, final String role) {
+        final Map<String, Object> sourceMap = new HashMap<String, Object>();
+        sourceMap.put("paths", Arrays.asList(paths));
+        sourceMap.put("roles", Arrays.asList(role));
+        return constraintLoader.parse(sourceMap, 1);
+    }
+
+    private Set<String> paths(final State state) {
+        final Set<String> pathSet = new HashSet<String>();
+        for (final LoginConstraint constraint : state.getConstraints()) {
+            pathSet.add(constraint.getPath());
+        }
+        return pathSet;
+    }
+
+    private Set<String> roles(final State state, final String path) {
+        for (final LoginConstraint constraint : state.getConstraints()) {
+            if (path.equals(constraint.getPath())) {
+                return set(constraint.getRoles(Method.GET));
+            }
+        }
+        return null;
+    }
+
+    private Set<String> set(final String... values) {
+        return new HashSet<String>(Arrays.asList(values));
+    }
+}
@@ -0,0 +1,146 @@
+package org.codelibs.elasticsearch.auth.security;
+
+import java.util.HashMap;
+import java.util.Map;
+import java.util.Random;
+
+import junit.framework.TestCase;
+
+public class ConstraintTrieTest extends TestCase {
+
+    private final RoleRegistry roleRegistry = new RoleRegistry();
+
+    public void test_match() {
+        final LoginConstraint[] constraints = new LoginConstraint[] {
+                create("/aaa"), create("/aaa/bbb"), create("/ab"),
+                create("/ccc") };
+        final ConstraintTrie trie = new ConstraintTrie(constraints);
+
+        assertEquals(4, trie.size());
+        assertSame(constraints[0], trie.match("/aaa"));
+        assertSame(constraints[0], trie.match("/aaa/_search"));
+        assertSame(constraints[1], trie.match("/aaa/bbb/_search"));
+        assertSame(constraints[2], trie.match("/abc"));
+        assertSame(constraints[3], trie.match("/ccc"));
+        assertNull(trie.match("/a"));
+        assertNull(trie.match("/bbb"));
+        assertNull(trie.match(""));
+    }
+
+    public void test_rootPath() {
+        final LoginConstraint[] constraints = new LoginConstraint[] {
+                create(""), create("/aaa") };
+        final ConstraintTrie trie = new ConstraintTrie(constraints);
+
+        assertSame(constraints[0], trie.match("/bbb"));
+        assertSame(constraints[1], trie.match("/aaa"));
+    }
+
+    public void test_update() {
+        final LoginConstraint aaa = create("/aaa");
+        final LoginConstraint aaaBbb = create("/aaa/bbb");
+        final ConstraintTrie trie = new ConstraintTrie(new LoginConstraint[] {
+                aaa, aaaBbb });
+
+        // split an edge
+        final LoginConstraint aa = create("/aa");
+        final LoginConstraint ab = create("/ab");
+        final Map<String, LoginConstraint> changes = new HashMap<String, LoginConstraint>();
+        changes.put("/aa", aa);
+        changes.put("/ab", ab);
+        final ConstraintTrie trie2 = trie.update(changes, 4);
+        assertEquals(4, trie2.size());
+        assertSame(aa, trie2.match("/aab"));
+        assertSame(aaa, trie2.match("/aaa"));
+        assertSame(aaaBbb, trie2.match("/aaa/bbb"));
+        assertSame(ab, trie2.match("/abc"));
+
+        // the old trie is not changed
+        assertNull(trie.match("/aab"));
+        assertNull(trie.match("/abc"));
+
+        // remove and replace
+        final LoginConstraint aaa2 = create("/aaa");
+        changes.clear();
+        changes.put("/aa", null);
+        changes.put("/aaa", aaa2);
+        changes.put("/aaa/bbb", null);
+        changes.put("/xyz", null);
+        final ConstraintTrie trie3 = trie2.update(changes, 2);
+        assertEquals(2, trie3.size());
+        assertNull(trie3.match("/aab"));
+        assertSame(aaa2, trie3.match("/aaa/bbb"));
+        assertSame(ab, trie3.match("/ab"));
+        assertNull(trie3.match("/xyz"));
+
+        // remove all
+        changes.clear();
+        changes.put("/aaa", null);
+        changes.put("/ab", null);
+        final ConstraintTrie trie4 = trie3.update(changes, 0);
+        assertEquals(0, trie4.getRoot().getKeys().length);
+        assertNull(trie4.match("/aaa"));
+    }
+
+    public void test_updateRandom() {
+        final Random random = new Random(1L);
+        final Map<String, LoginConstraint> constraintMap = new HashMap<String, LoginConstraint>();
+        ConstraintTrie trie = new ConstraintTrie(new LoginConstraint[0]);
+        for (int n = 0; n < 300; n++) {
+            final Map<String, LoginConstraint> changes = new HashMap<String, LoginConstraint>();
+            final int numOfChanges = 1 + random.nextInt(5);
+            for (int i = 0; i < numOfChanges; i++) {
+                final String path = randomPath(random, 6);
+                if (constraintMap.containsKey(path) && random.nextBoolean()) {
+                    changes.put(path, null);
+                } else {
+                    changes.put(path, create(path));
+                }
+            }
+            for (final Map.Entry<String, LoginConstraint> entry : changes
+                    .entrySet()) {
+                if (entry.getValue() == null) {
+                    constraintMap.remove(entry.getKey());
+                } else {
+                    constraintMap.put(entry.getKey(), entry.getValue());
+                }
+            }
+            trie = trie.update(changes, constraintMap.size());
+
+            final ConstraintTrie expected = new ConstraintTrie(constraintMap
+                    .values().toArray(
+                            new LoginConstraint[constraintMap.size()]));
+            assertEquals(constraintMap.size(), trie.size());
+            assertEquals(countNodes(expected.getRoot()),
+                    countNodes(trie.getRoot()));
+            for (int k = 0; k < 50; k++) {
+                final String path = randomPath(random, 8);
+                assertSame(path, expected.match(path), trie.match(path));
+            }
+        }
+    }
+
+    private int countNodes(final ConstraintTrie.Node node) {
+        int count = 1;
+        for (final ConstraintTrie.Node child : node.getChildren()) {
+            count += countNodes(child);
+        }
+        return count;
+    }
+
+    private String randomPath(final Random random, final int maxLength) {
+        final char[] chars = new char[] { 'a', 'b', 'c', '/' };
+        final StringBuilder buf = new StringBuilder("/");
+        final int length = random.nextInt(maxLength);
+        for (int i = 0; i < length; i++) {
+            buf.append(chars[random.nextInt(chars.length)]);
+        }
+        return buf.toString();
+    }
+
+    private LoginConstraint create(final String path) {
+        final LoginConstraint constraint = new LoginConstraint(roleRegistry);
+        constraint.setPath(path);
+        return constraint;
+    }
+}
@@ -0,0 +1,52 @@
+package org.codelibs.elasticsearch.auth.security;
+
+import junit.framework.TestCase;
+
+import org.elasticsearch.common.settings.ImmutableSettings;
+
+public class CredentialCacheTest extends TestCase {
+
+    public void test_putAndGet() {
+        final CredentialCache cache = createCache();
+        final String[] roles = new String[] { "user" };
+
+        assertTrue(cache.isEnabled());
+        assertNull(cache.get("taro", "taro123"));
+        cache.put("taro", "taro123", roles, cache.getGeneration());
+        assertSame(roles, cache.get("taro", "taro123"));
+        assertNull(cache.get("taro", "taro321"));
+        assertNull(cache.get("taro", null));
+        assertNull(cache.get("jiro", "taro123"));
+    }
+
+    public void test_invalidate() {
+        final CredentialCache cache = createCache();
+        final long generation = cache.getGeneration();
+        cache.put("taro", "taro123", new String[] { "user" }, generation);
+        cache.invalidate("taro");
+
+        assertNull(cache.get("taro", "taro123"));
+
+        // an entry loaded before the invalidation is skipped
+        cache.put("taro", "taro123", new String[] { "user" }, generation);
+        assertNull(cache.get("taro", "taro123"));
+        cache.put("taro", "taro123", new String[] { "user" },
+                cache.getGeneration());
+        assertNotNull(cache.get("taro", "taro123"));
+    }
+
+    public void test_disabled() {
+        final CredentialCache cache = new CredentialCache(
+                ImmutableSettings.EMPTY);
+
+        assertFalse(cache.isEnabled());
+        cache.put("taro", "taro123", new String[] { "user" },
+                cache.getGeneration());
+        assertNull(cache.get("taro", "taro123"));
+    }
+
+    private CredentialCache createCache() {
+        return new CredentialCache(ImmutableSettings.settingsBuilder()
+                .put("auth.authenticator.index.cache.size", 10).build());
+    }
+}
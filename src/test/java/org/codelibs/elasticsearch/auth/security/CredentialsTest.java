@@ -0,0 +1,69 @@
+package org.codelibs.elasticsearch.auth.security;
+
+import java.nio.charset.Charset;
+
+import junit.framework.TestCase;
+
+import org.elasticsearch.common.netty.buffer.ChannelBuffers;
+import org.elasticsearch.common.netty.handler.codec.http.DefaultHttpRequest;
+import org.elasticsearch.common.netty.handler.codec.http.HttpMethod;
+import org.elasticsearch.common.netty.handler.codec.http.HttpVersion;
+import org.elasticsearch.http.netty.NettyHttpRequest;
+import org.elasticsearch.rest.RestRequest;
+
+public class CredentialsTest extends TestCase {
+
+    public void test_parseParams() throws Exception {
+        final Credentials credentials = Credentials.parse(
+                createRequest("/login?username=taro&password=taro123", null),
+                "username", "password");
+
+        assertEquals("taro", credentials.getUsername());
+        assertEquals("taro123", credentials.getPassword());
+    }
+
+    public void test_parseContent() throws Exception {
+        final Credentials credentials = Credentials.parse(
+                createRequest("/login?username=jiro",
+                        "{\"roles\":{\"a\":[1,2]},\"username\":\"taro\","
+                                + "\"password\":\"taro123\"}"), "username",
+                "password");
+
+        assertEquals("taro", credentials.getUsername());
+        assertEquals("taro123", credentials.getPassword());
+    }
+
+    public void test_parseKeys() throws Exception {
+        final RestRequest request = createRequest("/login",
+                "{\"username\":\"taro\",\"password\":\"taro123\","
+                        + "\"user\":\"jiro\",\"pass\":\"jiro123\"}");
+
+        final Credentials credentials = Credentials.parse(request, "user",
+                "pass");
+        assertEquals("jiro", credentials.getUsername());
+        assertEquals("jiro123", credentials.getPassword());
+
+        final Credentials missing = Credentials.parse(request, "name", "pass");
+        assertNull(missing.getUsername());
+        assertEquals("jiro123", missing.getPassword());
+    }
+
+    public void test_parseNonObject() throws Exception {
+        final Credentials credentials = Credentials.parse(
+                createRequest("/login?username=taro&password=taro123",
+                        "username=jiro"), "username", "password");
+
+        assertEquals("taro", credentials.getUsername());
+        assertEquals("taro123", credentials.getPassword());
+    }
+
+    private RestRequest createRequest(final String uri, final String content) {
+        final DefaultHttpRequest httpRequest = new DefaultHttpRequest(
+                HttpVersion.HTTP_1_1, HttpMethod.POST, uri);
+        if (content != null) {
+            httpRequest.setContent(ChannelBuffers.copiedBuffer(content,
+                    Charset.forName("UTF-8")));
+        }
+        return new NettyHttpRequest(httpRequest, null);
+    }
+}
@@ -0,0 +1,63 @@
+package org.codelibs.elasticsearch.auth.security;
+
+import java.util.HashMap;
+import java.util.Map;
+
+import junit.framework.TestCase;
+
+import org.elasticsearch.common.xcontent.XContentBuilder;
+import org.elasticsearch.common.xcontent.XContentFactory;
+import org.elasticsearch.common.xcontent.XContentHelper;
+
+public class Pbkdf2PasswordHasherTest extends TestCase {
+
+    public void test_hashAndVerify() throws Exception {
+        final Pbkdf2PasswordHasher hasher = new Pbkdf2PasswordHasher(1000, 16,
+                32);
+        final Map<String, Object> sourceMap = hash(hasher, "test123");
+
+        assertEquals("pbkdf2", sourceMap.get(PasswordHasher.ALGORITHM_KEY));
+        assertEquals(1000, ((Number) sourceMap.get("iterations")).intValue());
+        assertTrue(hasher.verify("test123", sourceMap));
+        assertFalse(hasher.verify("test321", sourceMap));
+        assertFalse(hasher.verify(null, sourceMap));
+
+        // a random salt is used for each hash
+        assertFalse(sourceMap.get(PasswordHasher.PASSWORD_KEY).equals(
+                hash(hasher, "test123").get(PasswordHasher.PASSWORD_KEY)));
+    }
+
+    public void test_storedParameters() throws Exception {
+        final Map<String, Object> sourceMap = hash(new Pbkdf2PasswordHasher(
+                1000, 8, 16), "test123");
+
+        // parameters of the stored hash are used
+        assertTrue(new Pbkdf2PasswordHasher(2000, 16, 32).verify("test123",
+                sourceMap));
+    }
+
+    public void test_invalidSource() throws Exception {
+        final Pbkdf2PasswordHasher hasher = new Pbkdf2PasswordHasher(1000, 16,
+                32);
+        final Map<String, Object> sourceMap = hash(hasher, "test123");
+
+        final Map<String, Object> noSalt = new HashMap<String, Object>(
+                sourceMap);
+        noSalt.remove("salt");
+        assertFalse(hasher.verify("test123", noSalt));
+
+        final Map<String, Object> noIterations = new HashMap<String, Object>(
+                sourceMap);
+        noIterations.put("iterations", "1000");
+        assertFalse(hasher.verify("test123", noIterations));
+    }
+
+    private Map<String, Object> hash(final PasswordHasher hasher,
+            final String password) throws Exception {
+        final XContentBuilder builder = XContentFactory.jsonBuilder()
+                .startObject();
+        hasher.hash(password, builder);
+        builder.endObject();
+        return XContentHelper.convertToMap(builder.bytes(), false).v2();
+    }
+}
@@ -0,0 +1,59 @@
+package org.codelibs.elasticsearch.auth.token;
+
+import junit.framework.TestCase;
+
+import org.codelibs.elasticsearch.auth.token.SignedTokenCodec.SignedToken;
+
+public class SignedTokenCodecTest extends TestCase {
+
+    public void test_encodeAndDecode() {
+        final SignedTokenCodec codec = new SignedTokenCodec(
+                SignedTokenCodec.generateKey());
+        final String token = codec.encode(new String[] { "user", "admin" },
+                1000L);
+
+        assertTrue(SignedTokenCodec.isSignedToken(token));
+        final SignedToken signedToken = codec.decode(token);
+        assertNotNull(signedToken);
+        assertEquals(2, signedToken.getRoles().length);
+        assertEquals("user", signedToken.getRoles()[0]);
+        assertEquals("admin", signedToken.getRoles()[1]);
+        assertEquals(1000L, signedToken.getExpires());
+        assertFalse(signedToken.isExpired(999L));
+        assertTrue(signedToken.isExpired(1000L));
+
+        // a nonce makes each token unique
+        assertFalse(token.equals(codec.encode(
+                new String[] { "user", "admin" }, 1000L)));
+    }
+
+    public void test_noRoles() {
+        final SignedTokenCodec codec = new SignedTokenCodec(
+                SignedTokenCodec.generateKey());
+        final SignedToken signedToken = codec.decode(codec.encode(
+                new String[0], 1000L));
+
+        assertNotNull(signedToken);
+        assertEquals(0, signedToken.getRoles().length);
+    }
+
+    public void test_invalidToken() {
+        final SignedTokenCodec codec = new SignedTokenCodec(
+                SignedTokenCodec.generateKey());
+        final String token = codec.encode(new String[] { "user" }, 1000L);
+
+        // modified payload
+        final String modified = (token.charAt(0) == 'A' ? 'B' : 'A')
+                + token.substring(1);
+        assertNull(codec.decode(modified));
+
+        // signed by another key
+        final SignedTokenCodec otherCodec = new SignedTokenCodec(
+                SignedTokenCodec.generateKey());
+        assertNull(otherCodec.decode(token));
+
+        assertNull(codec.decode(token.substring(0, token.indexOf('.') + 1)));
+        assertNull(codec.decode("." + SignedTokenCodec.getSignature(token)));
+        assertFalse(SignedTokenCodec.isSignedToken("abcdef"));
+    }
+}
@@ -0,0 +1,68 @@
+package org.codelibs.elasticsearch.auth.token;
+
+import junit.framework.TestCase;
+
+import org.elasticsearch.common.settings.ImmutableSettings;
+
+public class TokenCacheTest extends TestCase {
+
+    public void test_putAndGet() {
+        final TokenCache tokenCache = new TokenCache(
+                ImmutableSettings.EMPTY);
+        final TokenInfo tokenInfo = new TokenInfo(new String[] { "user" }, 1L,
+                2L);
+
+        assertTrue(tokenCache.isEnabled());
+        assertNull(tokenCache.get("token1"));
+        tokenCache.put("token1", tokenInfo);
+        assertSame(tokenInfo, tokenCache.get("token1"));
+        tokenCache.invalidate("token1");
+        assertNull(tokenCache.get("token1"));
+    }
+
+    public void test_invalidToken() {
+        final TokenCache tokenCache = new TokenCache(ImmutableSettings
+                .settingsBuilder()
+                .put("auth.token.cache.invalid.threshold", 3).build());
+
+        assertFalse(tokenCache.isInvalid("token1"));
+        tokenCache.putInvalid("token1");
+        assertFalse(tokenCache.isRejected("token1"));
+        assertTrue(tokenCache.isInvalid("token1"));
+        assertFalse(tokenCache.isRejected("token1"));
+        assertTrue(tokenCache.isInvalid("token1"));
+        assertTrue(tokenCache.isRejected("token1"));
+
+        // a created token is not invalid any more
+        tokenCache.put("token1", new TokenInfo(new String[] { "user" }, 1L,
+                1L));
+        assertFalse(tokenCache.isInvalid("token1"));
+        assertFalse(tokenCache.isRejected("token1"));
+    }
+
+    public void test_disabled() {
+        final TokenCache tokenCache = new TokenCache(ImmutableSettings
+                .settingsBuilder().put("auth.token.cache.size", 0)
+                .put("auth.token.cache.invalid.size", 0).build());
+
+        assertFalse(tokenCache.isEnabled());
+        tokenCache.put("token1", new TokenInfo(new String[] { "user" }, 1L,
+                1L));
+        assertNull(tokenCache.get("token1"));
+        tokenCache.putInvalid("token2");
+        assertFalse(tokenCache.isInvalid("token2"));
+        assertFalse(tokenCache.isRejected("token2"));
+    }
+
+    public void test_clear() {
+        final TokenCache tokenCache = new TokenCache(
+                ImmutableSettings.EMPTY);
+        tokenCache.put("token1", new TokenInfo(new String[] { "user" }, 1L,
+                1L));
+        tokenCache.putInvalid("token2");
+        tokenCache.clear();
+
+        assertNull(tokenCache.get("token1"));
+        assertFalse(tokenCache.isInvalid("token2"));
+    }
+}
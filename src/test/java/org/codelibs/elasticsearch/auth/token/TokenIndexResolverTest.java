@@ -0,0 +1,76 @@
+package org.codelibs.elasticsearch.auth.token;
+
+import junit.framework.TestCase;
+
+import org.elasticsearch.common.settings.ImmutableSettings;
+
+public class TokenIndexResolverTest extends TestCase {
+
+    private static final long DAY = 24 * 60 * 60 * 1000L;
+
+    public void test_notRolling() {
+        final TokenIndexResolver resolver = new TokenIndexResolver(
+                ImmutableSettings.EMPTY, "auth");
+
+        assertFalse(resolver.isRolling());
+        assertEquals("auth", resolver.getSearchIndex());
+        assertEquals("abc", resolver.createToken("abc",
+                System.currentTimeMillis()));
+        assertEquals("auth", resolver.getIndex("abc"));
+        assertEquals(0, resolver.getExpiredIndices(
+                new String[] { "auth-token-2015.01.01" },
+                System.currentTimeMillis()).length);
+    }
+
+    public void test_rolling() {
+        final TokenIndexResolver resolver = new TokenIndexResolver(
+                ImmutableSettings.settingsBuilder()
+                        .put("auth.token.index.rolling", true)
+                        .put("auth.token.index.retention", "2d").build(),
+                "auth");
+        final long now = System.currentTimeMillis();
+
+        assertTrue(resolver.isRolling());
+        assertEquals("auth-token", resolver.getSearchIndex());
+        assertEquals("auth-token-*", resolver.getTemplatePattern());
+
+        // 2015-01-02T10:00:00Z
+        final String token = resolver.createToken("abc", 1420192800000L);
+        assertEquals("20150102-abc", token);
+
+        final String current = resolver.createToken("abc", now);
+        assertEquals("auth-token-" + current.substring(0, 4) + "."
+                + current.substring(4, 6) + "." + current.substring(6, 8),
+                resolver.getIndex(current));
+
+        // the bucket of an old token is expired
+        assertNull(resolver.getIndex(token));
+        assertNull(resolver.getIndex("2015xx02-abc"));
+        // a token created before rolling was enabled
+        assertEquals("auth", resolver.getIndex("abc"));
+        assertEquals("auth", resolver.getIndex("0123456789abcdef"));
+    }
+
+    public void test_getExpiredIndices() {
+        final TokenIndexResolver resolver = new TokenIndexResolver(
+                ImmutableSettings.settingsBuilder()
+                        .put("auth.token.index.rolling", true)
+                        .put("auth.token.index.retention", "2d").build(),
+                "auth");
+        // 2015-01-10T00:00:00Z
+        final long now = 1420848000000L;
+
+        final String[] indices = resolver.getExpiredIndices(new String[] {
+                "auth", "auth-token-2015.01.06", "auth-token-2015.01.07",
+                "auth-token-2015.01.08", "auth-token-foo", "other" }, now);
+        assertEquals(2, indices.length);
+        assertEquals("auth-token-2015.01.06", indices[0]);
+        assertEquals("auth-token-2015.01.07", indices[1]);
+
+        // a bucket is kept for one day and the retention
+        assertEquals(1, resolver.getExpiredIndices(
+                new String[] { "auth-token-2015.01.07" }, now + DAY - 1).length);
+        assertEquals(0, resolver.getExpiredIndices(
+                new String[] { "auth-token-2015.01.08" }, now + DAY - 1).length);
+    }
+}
@@ -0,0 +1,103 @@
+package org.codelibs.elasticsearch.auth.token;
+
+import static org.codelibs.elasticsearch.runner.ElasticsearchClusterRunner.newConfigs;
+
+import java.util.Date;
+import java.util.HashMap;
+import java.util.Map;
+
+import junit.framework.TestCase;
+
+import org.codelibs.elasticsearch.auth.util.MapUtil;
+import org.codelibs.elasticsearch.runner.ElasticsearchClusterRunner;
+import org.elasticsearch.action.get.GetResponse;
+import org.elasticsearch.client.Client;
+import org.elasticsearch.common.settings.ImmutableSettings;
+import org.elasticsearch.common.settings.ImmutableSettings.Builder;
+import org.elasticsearch.common.unit.TimeValue;
+
+public class TokenUpdaterTest extends TestCase {
+
+    private static final String INDEX = "test";
+
+    private static final String TYPE = "token";
+
+    private ElasticsearchClusterRunner runner;
+
+    private TokenUpdater tokenUpdater;
+
+    @Override
+    protected void setUp() throws Exception {
+        runner = new ElasticsearchClusterRunner();
+        runner.onBuild(new ElasticsearchClusterRunner.Builder() {
+            @Override
+            public void build(final int number, final Builder settingBuilder) {
+            }
+        }).build(
+                newConfigs()
+                        .clusterName("es-auth" + System.currentTimeMillis())
+                        .ramIndexStore().numOfNode(1));
+        runner.ensureYellow();
+
+        tokenUpdater = new TokenUpdater(runner.client(),
+                new TokenIndexResolver(ImmutableSettings.EMPTY, INDEX), TYPE,
+                TimeValue.timeValueMinutes(1), 2);
+    }
+
+    @Override
+    protected void tearDown() throws Exception {
+        runner.close();
+        runner.clean();
+    }
+
+    public void test_record() {
+        final long now = System.currentTimeMillis();
+
+        // accessed within the granularity
+        final TokenInfo tokenInfo1 = new TokenInfo(new String[] { "user" },
+                now, now);
+        tokenUpdater.record("token1", tokenInfo1);
+        assertEquals(0, tokenUpdater.size());
+        assertEquals(now, tokenInfo1.getLastModified());
+
+        final TokenInfo tokenInfo2 = new TokenInfo(new String[] { "user" },
+                0L, 0L);
+        tokenUpdater.record("token2", tokenInfo2);
+        assertEquals(1, tokenUpdater.size());
+        assertTrue(tokenInfo2.getLastModified() >= now);
+
+        tokenUpdater.remove("token2");
+        assertEquals(0, tokenUpdater.size());
+    }
+
+    public void test_flush() {
+        final Client client = runner.client();
+        for (int i = 0; i < 3; i++) {
+            final Map<String, Object> sourceMap = new HashMap<String, Object>();
+            sourceMap.put("roles", new String[] { "user" });
+            sourceMap.put("created", new Date(0L));
+            sourceMap.put("lastModified", new Date(0L));
+            client.prepareIndex(INDEX, TYPE, "token" + i).setSource(sourceMap)
+                    .setRefresh(true).execute().actionGet();
+        }
+
+        final long now = System.currentTimeMillis();
+        for (int i = 0; i < 3; i++) {
+            tokenUpdater.record("token" + i, new TokenInfo(
+                    new String[] { "user" }, 0L, 0L));
+        }
+        assertEquals(3, tokenUpdater.size());
+
+        // 3 tokens are written by 2 bulk requests
+        tokenUpdater.flush(TimeValue.timeValueSeconds(10));
+        assertEquals(0, tokenUpdater.size());
+        for (int i = 0; i < 3; i++) {
+            final GetResponse response = client
+                    .prepareGet(INDEX, TYPE, "token" + i).execute().actionGet();
+            final Date lastModified = MapUtil.getAsDate(response.getSource(),
+                    "lastModified", null);
+            assertNotNull(lastModified);
+            assertTrue(lastModified.getTime() >= now);
+        }
+    }
+}